@@ -0,0 +1,28 @@
+package interpreter.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Standard output and error replaced for a whole trial, the scripts printing their results and errors.
+ */
+class DiscardedOutput {
+
+	private PrintStream out;
+	private PrintStream err;
+
+	public void discard() {
+		out = System.out;
+		err = System.err;
+
+		final var discarded = new PrintStream(OutputStream.nullOutputStream());
+		System.setOut(discarded);
+		System.setErr(discarded);
+	}
+
+	public void restore() {
+		System.setOut(out);
+		System.setErr(err);
+	}
+
+}
@@ -0,0 +1,50 @@
+package interpreter.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import interpreter.Lox;
+import interpreter.evaluating.Resolver;
+import interpreter.grammar.Scanner;
+import interpreter.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Phases run before the script is executed, each one over the output of the previous one.
+ * The resolver overwrites the bindings of the same trees at every call, always with the same layout.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmark {
+
+	@Benchmark
+	public void scan(Workload workload, Blackhole blackhole) {
+		for (final var source : workload.sources) {
+			blackhole.consume(new Scanner(new Lox(), source).scanTokens());
+		}
+	}
+
+	@Benchmark
+	public void parse(Workload workload, Blackhole blackhole) {
+		for (final var tokens : workload.tokens) {
+			blackhole.consume(new Parser(new Lox(), tokens).parse());
+		}
+	}
+
+	@Benchmark
+	public void resolve(Workload workload, Blackhole blackhole) {
+		for (final var statements : workload.statements) {
+			blackhole.consume(new Resolver(new Lox()).resolveScript(statements));
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package interpreter.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import interpreter.Lox;
+import interpreter.evaluating.Interpreter;
+import interpreter.evaluating.Resolver;
+import interpreter.evaluating.compiler.ClosureCompiler;
+import interpreter.flat.FlatAst;
+import interpreter.flat.FlatInterpreter;
+import interpreter.flat.FlatResolver;
+import interpreter.flat.Flattener;
+import interpreter.grammar.Scanner;
+import interpreter.optimizer.Optimizer;
+import interpreter.parser.Frame;
+import interpreter.parser.Parser;
+import interpreter.parser.Statement;
+import interpreter.vm.Compiler;
+import interpreter.vm.VirtualMachine;
+import interpreter.vm.VmFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Execution of the scripts by every engine, from the same optimized trees as the <code>run</code> command.
+ * Every run starts from fresh globals, so the closure engine compiles the script again as its code is bound to them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+
+	@Benchmark
+	public void interpret(Programs programs) {
+		switch (programs.engine) {
+			case "tree" -> {
+				for (var index = 0; index < programs.trees.size(); index++) {
+					final var interpreter = new Interpreter(new Lox());
+					interpreter.interpret(programs.trees.get(index), programs.frames.get(index));
+				}
+			}
+
+			case "closure" -> {
+				for (var index = 0; index < programs.trees.size(); index++) {
+					final var interpreter = new Interpreter(new Lox());
+					final var compiler = new ClosureCompiler(interpreter);
+					interpreter.interpret(compiler.compileScript(programs.trees.get(index)), programs.frames.get(index));
+				}
+			}
+
+			case "vm" -> {
+				for (final var script : programs.scripts) {
+					final var virtualMachine = new VirtualMachine(new Lox());
+					virtualMachine.interpret(script);
+				}
+			}
+
+			case "flat" -> {
+				for (final var ast : programs.flatTrees) {
+					final var interpreter = new FlatInterpreter(new Lox(), ast);
+					interpreter.interpret();
+				}
+			}
+
+			default -> throw new IllegalArgumentException("Unknown engine: " + programs.engine);
+		}
+	}
+
+	/**
+	 * Scripts of the workload, compiled for the engine when it has its own representation.
+	 * The state loads its own scripts rather than extending {@link Workload}, so it does not depend on the order of the setup methods.
+	 */
+	@State(Scope.Benchmark)
+	public static class Programs {
+
+		@Param({Sources.CORPUS, "fib", "binary_trees", "method_call", "instantiation", "string_equality", "zoo", "literals"})
+		public String workload;
+
+		@Param({"tree", "closure", "vm", "flat"})
+		public String engine;
+
+		private final DiscardedOutput output = new DiscardedOutput();
+
+		private final List<List<Statement>> trees = new ArrayList<>();
+		private final List<Frame> frames = new ArrayList<>();
+		private final List<VmFunction> scripts = new ArrayList<>();
+		private final List<FlatAst> flatTrees = new ArrayList<>();
+
+		@Setup(Level.Trial)
+		public void compile() {
+			output.discard();
+
+			for (final var source : Sources.load(workload)) {
+				final var lox = new Lox();
+				final var parser = new Parser(lox, new Scanner(lox, source).scanTokens());
+
+				if ("flat".equals(engine)) {
+					final var flattener = new Flattener();
+					parser.declarations().forEachRemaining(flattener::add);
+
+					final var ast = flattener.finish();
+					new FlatResolver(lox, ast).resolveScript();
+
+					flatTrees.add(ast);
+				} else {
+					final var statements = parser.parse();
+					final var frame = new Resolver(lox).resolveScript(statements);
+					final var program = new Optimizer(lox).optimize(statements);
+
+					if ("vm".equals(engine)) {
+						scripts.add(new Compiler(lox).compile(program));
+					}
+
+					trees.add(program);
+					frames.add(frame);
+				}
+
+				if (lox.hadError()) {
+					throw new IllegalStateException("Invalid script in workload: " + workload);
+				}
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void restore() {
+			output.restore();
+		}
+
+	}
+
+}
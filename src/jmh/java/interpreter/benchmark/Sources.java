@@ -0,0 +1,93 @@
+package interpreter.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import interpreter.Lox;
+import interpreter.evaluating.Resolver;
+import interpreter.grammar.Scanner;
+import interpreter.parser.Parser;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+class Sources {
+
+	public static final String CORPUS = "corpus";
+
+	/**
+	 * Directory of the test corpus, relative to the working directory of the benchmarks unless overridden with <code>-Dlox.corpus=&lt;directory&gt;</code>.
+	 */
+	private static final Path CORPUS_DIRECTORY = Path.of(System.getProperty("lox.corpus", "tests"));
+
+	/**
+	 * @return the scripts of the workload, either the whole corpus or one of the scripts bundled with the benchmarks
+	 */
+	public static List<ByteBuffer> load(String workload) {
+		if (CORPUS.equals(workload)) {
+			return corpus();
+		}
+
+		try (final var input = Sources.class.getResourceAsStream("/benchmarks/%s.lox".formatted(workload))) {
+			if (input == null) {
+				throw new IllegalArgumentException("Unknown workload: " + workload);
+			}
+
+			return List.of(ByteBuffer.wrap(input.readAllBytes()));
+		} catch (IOException exception) {
+			throw new UncheckedIOException(exception);
+		}
+	}
+
+	/**
+	 * Scripts with syntax or resolution errors are left out, as they never reach the later phases.
+	 */
+	private static List<ByteBuffer> corpus() {
+		try (final var paths = Files.walk(CORPUS_DIRECTORY)) {
+			final var sources = paths
+				.filter((path) -> path.toString().endsWith(".lox"))
+				.sorted()
+				.map(Sources::read)
+				.filter(Sources::isValid)
+				.toList();
+
+			if (sources.isEmpty()) {
+				throw new IllegalStateException("No script in the corpus: " + CORPUS_DIRECTORY.toAbsolutePath());
+			}
+
+			return sources;
+		} catch (IOException exception) {
+			throw new UncheckedIOException(exception);
+		}
+	}
+
+	private static ByteBuffer read(Path path) {
+		try {
+			return ByteBuffer.wrap(Files.readAllBytes(path));
+		} catch (IOException exception) {
+			throw new UncheckedIOException(exception);
+		}
+	}
+
+	private static boolean isValid(ByteBuffer source) {
+		final var lox = new Lox();
+
+		final var tokens = new Scanner(lox, source).scanTokens();
+		if (lox.hadError()) {
+			return false;
+		}
+
+		final var statements = new Parser(lox, tokens).parse();
+		if (lox.hadError()) {
+			return false;
+		}
+
+		new Resolver(lox).resolveScript(statements);
+
+		return !lox.hadError();
+	}
+
+}
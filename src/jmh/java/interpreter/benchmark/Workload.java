@@ -0,0 +1,65 @@
+package interpreter.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import interpreter.Lox;
+import interpreter.evaluating.Resolver;
+import interpreter.grammar.Scanner;
+import interpreter.grammar.TokenBuffer;
+import interpreter.parser.Parser;
+import interpreter.parser.Statement;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Scripts of a workload with the output of every phase, so each benchmark only measures its own phase.
+ * The output of the scripts and their errors are discarded for the whole trial.
+ */
+@State(Scope.Benchmark)
+public class Workload {
+
+	@Param({Sources.CORPUS, "fib", "binary_trees", "method_call", "instantiation", "string_equality", "zoo", "literals"})
+	public String workload;
+
+	List<ByteBuffer> sources;
+	List<TokenBuffer> tokens;
+	List<List<Statement>> statements;
+
+	private final DiscardedOutput output = new DiscardedOutput();
+
+	@Setup(Level.Trial)
+	public void load() {
+		output.discard();
+
+		sources = Sources.load(workload);
+		tokens = new ArrayList<>();
+		statements = new ArrayList<>();
+
+		for (final var source : sources) {
+			final var lox = new Lox();
+
+			final var scanned = new Scanner(lox, source).scanTokens();
+			final var parsed = new Parser(lox, scanned).parse();
+			new Resolver(lox).resolveScript(parsed);
+
+			if (lox.hadError()) {
+				throw new IllegalStateException("Invalid script in workload: " + workload);
+			}
+
+			tokens.add(scanned);
+			statements.add(parsed);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void restore() {
+		output.restore();
+	}
+
+}
@@ -1,29 +1,47 @@
 package interpreter;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
+import interpreter.cache.AstCache;
 import interpreter.evaluating.Interpreter;
 import interpreter.evaluating.Resolver;
+import interpreter.evaluating.compiler.ClosureCompiler;
+import interpreter.flat.FlatAst;
+import interpreter.flat.FlatInterpreter;
+import interpreter.flat.FlatResolver;
+import interpreter.flat.Flattener;
+import interpreter.grammar.ParallelScanner;
 import interpreter.grammar.Scanner;
+import interpreter.grammar.TokenBuffer;
+import interpreter.optimizer.Optimizer;
 import interpreter.parser.AstPrinter;
+import interpreter.parser.Frame;
 import interpreter.parser.Parser;
+import interpreter.parser.Statement;
+import interpreter.vm.Compiler;
+import interpreter.vm.VirtualMachine;
 
 public class Main {
 
-	public static void tokenize(Lox lox, String content) {
-		final var scanner = new Scanner(lox, content);
-		final var tokens = scanner.scanTokens();
+	public static void tokenize(Lox lox, ByteBuffer content) {
+		final var tokens = scan(lox, content);
 
-		for (final var token : tokens) {
-			System.out.println(token.format());
+		final var output = new StringBuilder();
+		for (var index = 0; index < tokens.size(); index++) {
+			tokens.format(index, output);
+			output.append(System.lineSeparator());
 		}
+
+		System.out.print(output);
 	}
 
-	public static void parse(Lox lox, String content) {
-		final var scanner = new Scanner(lox, content);
-		final var tokens = scanner.scanTokens();
+	public static void parse(Lox lox, ByteBuffer content) {
+		final var tokens = scan(lox, content);
 
 		if (lox.hadError()) {
 			return;
@@ -35,9 +53,8 @@ public class Main {
 			.ifPresent(System.out::println);
 	}
 
-	public static void evaluate(Lox lox, String content) {
-		final var scanner = new Scanner(lox, content);
-		final var tokens = scanner.scanTokens();
+	public static void evaluate(Lox lox, ByteBuffer content) {
+		final var tokens = scan(lox, content);
 
 		if (lox.hadError()) {
 			return;
@@ -54,31 +71,180 @@ public class Main {
 		interpreter.interpret(root.orElseThrow());
 	}
 
-	public static void run(Lox lox, String content) {
-		final var scanner = new Scanner(lox, content);
-		final var tokens = scanner.scanTokens();
+	/**
+	 * @param lazy whether to parse the bodies of the top-level functions and methods on their first call, the others being checked after the run
+	 */
+	public static void run(Lox lox, ByteBuffer content, String engine, boolean lazy) {
+		final var tokens = scan(lox, content);
 
 		if (lox.hadError()) {
 			return;
 		}
 
-		final var parser = new Parser(lox, tokens);
+		final var parser = new Parser(lox, tokens, lazy);
 		final var statements = parser.parse();
 
 		if (lox.hadError()) {
 			return;
 		}
 
-		final var interpreter = new Interpreter(lox);
+		final var resolver = new Resolver(lox);
+		final var frame = resolver.resolveScript(statements);
 
-		final var resolver = new Resolver(interpreter);
-		resolver.resolve(statements);
+		if (!lox.hadError()) {
+			final var optimizer = new Optimizer(lox);
+			execute(lox, optimizer.optimize(statements), frame, engine);
+		}
+
+		if (lazy) {
+			parser.parseDeferredBodies();
+		}
+	}
+
+	/**
+	 * Run the script on a {@link FlatAst}, each top-level declaration being flattened as soon as it is parsed.
+	 * The flat engine has its own resolver and skips the optimizer.
+	 */
+	public static void runFlat(Lox lox, ByteBuffer content) {
+		final var tokens = scan(lox, content);
 
 		if (lox.hadError()) {
 			return;
 		}
 
-		interpreter.interpret(statements);
+		final var parser = new Parser(lox, tokens);
+		final var flattener = new Flattener();
+		parser.declarations().forEachRemaining(flattener::add);
+
+		if (lox.hadError()) {
+			return;
+		}
+
+		final var ast = flattener.finish();
+
+		final var resolver = new FlatResolver(lox, ast);
+		resolver.resolveScript();
+
+		if (lox.hadError()) {
+			return;
+		}
+
+		final var interpreter = new FlatInterpreter(lox, ast);
+		interpreter.interpret();
+	}
+
+	/**
+	 * Run the script from the tree cached for its source, or compile it and cache it when it has no syntax or resolution error.
+	 */
+	public static void runCached(Lox lox, ByteBuffer content, String engine, AstCache cache) {
+		final var hash = cache.hash(content);
+
+		final var cached = cache.load(hash);
+		if (cached.isPresent()) {
+			execute(lox, cached.get().statements(), cached.get().frame(), engine);
+			return;
+		}
+
+		final var tokens = scan(lox, content);
+
+		if (lox.hadError()) {
+			return;
+		}
+
+		final var parser = new Parser(lox, tokens);
+		final var statements = parser.parse();
+
+		if (lox.hadError()) {
+			return;
+		}
+
+		final var resolver = new Resolver(lox);
+		final var frame = resolver.resolveScript(statements);
+
+		if (lox.hadError()) {
+			return;
+		}
+
+		final var optimizer = new Optimizer(lox);
+		final var program = optimizer.optimize(statements);
+
+		cache.store(hash, new AstCache.Script(program, frame));
+
+		execute(lox, program, frame, engine);
+	}
+
+	private static void execute(Lox lox, List<Statement> program, Frame frame, String engine) {
+		switch (engine) {
+			case "tree" -> {
+				final var interpreter = new Interpreter(lox);
+				interpreter.interpret(program, frame);
+			}
+
+			case "closure" -> {
+				final var interpreter = new Interpreter(lox);
+				final var compiler = new ClosureCompiler(interpreter);
+				interpreter.interpret(compiler.compileScript(program), frame);
+			}
+
+			case "vm" -> {
+				final var compiler = new Compiler(lox);
+				final var script = compiler.compile(program);
+
+				if (lox.hadError()) {
+					return;
+				}
+
+				final var virtualMachine = new VirtualMachine(lox);
+				virtualMachine.interpret(script);
+			}
+
+			default -> throw new IllegalArgumentException("Unknown engine: " + engine);
+		}
+	}
+
+	/**
+	 * Run the script one top-level declaration at a time, each one being scanned, parsed, resolved and executed before the next one is parsed.
+	 * Unlike with {@link #run}, the declarations preceding an error have already been executed when it is reported.
+	 * After an error, the rest of the script is still scanned, and resolved if it parses, to report its errors without being executed.
+	 */
+	public static void stream(Lox lox, ByteBuffer content, String engine) {
+		final var scanner = new Scanner(lox, content);
+		final var parser = new Parser(lox, scanner.scanTokensLazily());
+		final var resolver = new Resolver(lox);
+		final var optimizer = new Optimizer(lox);
+		final var interpreter = new Interpreter(lox);
+		final var compiler = new ClosureCompiler(interpreter);
+
+		final var declarations = parser.declarations();
+		while (declarations.hasNext()) {
+			final var statements = List.of(declarations.next());
+
+			if (scanner.hadError()) {
+				break;
+			}
+
+			final var frame = resolver.resolveScript(statements);
+
+			if (lox.hadError()) {
+				continue;
+			}
+
+			final var program = optimizer.optimize(statements);
+
+			switch (engine) {
+				case "tree" -> interpreter.interpret(program, frame);
+				case "closure" -> interpreter.interpret(compiler.compileScript(program), frame);
+				default -> throw new IllegalArgumentException("Engine cannot stream: " + engine);
+			}
+
+			if (lox.hadRuntimeError()) {
+				return;
+			}
+		}
+
+		if (lox.hadError()) {
+			scanner.drain();
+		}
 	}
 
 	public static void main(String[] args) {
@@ -88,11 +254,47 @@ public class Main {
 		}
 
 		final var command = args[0];
-		final var filePath = args[1];
 
-		String content = "";
+		String filePath = null;
+		var engine = "tree";
+		var streaming = false;
+		var lazy = false;
+		Path cacheDirectory = null;
+
+		for (var index = 1; index < args.length; index++) {
+			final var argument = args[index];
+
+			if (argument.startsWith("--engine=")) {
+				engine = argument.substring("--engine=".length());
+			} else if ("--stream".equals(argument)) {
+				streaming = true;
+			} else if ("--lazy".equals(argument)) {
+				lazy = true;
+			} else if (argument.startsWith("--cache=")) {
+				cacheDirectory = Path.of(argument.substring("--cache=".length()));
+			} else if (argument.startsWith("--")) {
+				System.err.println("Unknown option: " + argument);
+				System.exit(1);
+			} else {
+				filePath = argument;
+			}
+		}
+
+		final var walksTree = List.of("tree", "closure").contains(engine);
+		final var invalid = filePath == null
+			|| !List.of("tree", "closure", "vm", "flat").contains(engine)
+			|| ((streaming || lazy) && !walksTree)
+			|| (streaming && lazy)
+			|| (cacheDirectory != null && (streaming || lazy || "flat".equals(engine)));
+
+		if (invalid) {
+			System.err.println("Usage: ./your_program.sh run [--engine=tree|closure|vm|flat] [--stream] [--lazy] [--cache=<directory>] <filename>");
+			System.exit(1);
+		}
+
+		ByteBuffer content = null;
 		try {
-			content = Files.readString(Path.of(filePath));
+			content = map(Path.of(filePath));
 		} catch (IOException e) {
 			System.err.println("Error reading file: " + e.getMessage());
 			System.exit(1);
@@ -104,7 +306,17 @@ public class Main {
 			case "tokenize" -> tokenize(lox, content);
 			case "parse" -> parse(lox, content);
 			case "evaluate" -> evaluate(lox, content);
-			case "run" -> run(lox, content);
+			case "run" -> {
+				if (streaming) {
+					stream(lox, content, engine);
+				} else if ("flat".equals(engine)) {
+					runFlat(lox, content);
+				} else if (cacheDirectory != null) {
+					runCached(lox, content, engine, new AstCache(cacheDirectory));
+				} else {
+					run(lox, content, engine, lazy);
+				}
+			}
 
 			default -> {
 				System.err.println("Unknown command: " + command);
@@ -119,4 +331,24 @@ public class Main {
 		}
 	}
 
+	/**
+	 * Scan large sources in parallel, small ones are not worth the split.
+	 */
+	private static TokenBuffer scan(Lox lox, ByteBuffer content) {
+		if (content.limit() >= ParallelScanner.THRESHOLD) {
+			return new ParallelScanner(lox, content).scanTokens();
+		}
+
+		return new Scanner(lox, content).scanTokens();
+	}
+
+	/**
+	 * Map the source file in memory rather than copying it to the heap and decoding it.
+	 */
+	private static ByteBuffer map(Path path) throws IOException {
+		try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
 }
\ No newline at end of file
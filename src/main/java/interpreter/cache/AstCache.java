@@ -0,0 +1,93 @@
+package interpreter.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import interpreter.parser.Frame;
+import interpreter.parser.Statement;
+import lombok.NonNull;
+
+/**
+ * Directory of resolved and optimized scripts, each one stored in a file named after the SHA-256 hash of its source.
+ * Running an unchanged script again loads its tree, skipping the scanner, the parser, the resolver and the optimizer.
+ * The cache is best effort: an entry that cannot be read or fails its checksum is a miss, and an entry that cannot be written is skipped.
+ */
+public class AstCache {
+
+	private final Path directory;
+
+	public AstCache(
+		@NonNull Path directory
+	) {
+		this.directory = directory;
+	}
+
+	public String hash(ByteBuffer source) {
+		try {
+			final var digest = MessageDigest.getInstance("SHA-256");
+			digest.update(source.duplicate());
+
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	public Optional<Script> load(String hash) {
+		final var path = entry(hash);
+		if (!Files.isRegularFile(path)) {
+			return Optional.empty();
+		}
+
+		try {
+			return AstSerializer.read(ByteBuffer.wrap(Files.readAllBytes(path)));
+		} catch (IOException | RuntimeException __) {
+			/* truncated or damaged, overwritten by the next store */
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Write the entry to a temporary file first, so that concurrent runs of the same script never read it half written.
+	 */
+	public void store(String hash, Script script) {
+		Path temporary = null;
+
+		try {
+			Files.createDirectories(directory);
+
+			temporary = Files.createTempFile(directory, hash, ".tmp");
+			Files.write(temporary, AstSerializer.write(script));
+			Files.move(temporary, entry(hash), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException __) {
+			if (temporary != null) {
+				try {
+					Files.deleteIfExists(temporary);
+				} catch (IOException ___) {
+					/* left for the user to clean up */
+				}
+			}
+		}
+	}
+
+	private Path entry(String hash) {
+		return directory.resolve(hash + ".ast");
+	}
+
+	/**
+	 * @param frame the frame of the script, as returned by the resolver
+	 */
+	public record Script(
+		@NonNull List<Statement> statements,
+		@NonNull Frame frame
+	) {}
+
+}
@@ -0,0 +1,632 @@
+package interpreter.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import interpreter.grammar.Literal;
+import interpreter.grammar.Token;
+import interpreter.grammar.TokenType;
+import interpreter.parser.Binding;
+import interpreter.parser.Expression;
+import interpreter.parser.Frame;
+import interpreter.parser.FunctionBody;
+import interpreter.parser.Statement;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Binary form of a resolved syntax tree, with the bindings and frames filled in by the resolver.
+ * Counts, line differences and slots are written as variable-length integers, and every distinct string is written once, later occurrences referring to it by index.
+ * The header ends with the CRC32 of the payload, so that a damaged entry is rejected before any of it is deserialized.
+ */
+@UtilityClass
+class AstSerializer {
+
+	private static final int MAGIC = 0x4C4F5841;
+
+	/** to be bumped whenever the nodes or the resolver change, older entries being ignored */
+	private static final int VERSION = 2;
+
+	private static final TokenType[] TOKEN_TYPES = TokenType.values();
+	private static final Binding.Kind[] KINDS = Binding.Kind.values();
+
+	public static byte[] write(AstCache.Script script) {
+		final var payload = new Writer();
+		payload.writeFrame(script.frame());
+		payload.writeStatements(script.statements());
+
+		final var bytes = payload.output.toByteArray();
+
+		final var entry = new Writer();
+		entry.writeInt(MAGIC);
+		entry.writeVarInt(VERSION);
+		entry.writeInt(checksum(ByteBuffer.wrap(bytes)));
+		entry.output.writeBytes(bytes);
+
+		return entry.output.toByteArray();
+	}
+
+	/**
+	 * @return the script, or nothing if it was written by another version
+	 */
+	public static Optional<AstCache.Script> read(ByteBuffer input) {
+		final var reader = new Reader(input);
+		if (input.getInt() != MAGIC || reader.readVarInt() != VERSION) {
+			return Optional.empty();
+		}
+
+		if (input.getInt() != checksum(input.duplicate())) {
+			throw new IllegalStateException("damaged entry");
+		}
+
+		final var frame = reader.readFrame();
+		final var statements = reader.readStatements();
+
+		if (input.hasRemaining()) {
+			throw new IllegalStateException("trailing bytes");
+		}
+
+		return Optional.of(new AstCache.Script(statements, frame));
+	}
+
+	private static int checksum(ByteBuffer payload) {
+		final var crc = new CRC32();
+		crc.update(payload);
+
+		return (int) crc.getValue();
+	}
+
+	private enum StatementTag {
+
+		EXPRESSION,
+		PRINT,
+		VARIABLE,
+		BLOCK,
+		IF,
+		WHILE,
+		FUNCTION,
+		RETURN,
+		CLASS;
+
+		private static final StatementTag[] VALUES = values();
+
+	}
+
+	private enum ExpressionTag {
+
+		LITERAL,
+		GROUPING,
+		UNARY,
+		BINARY,
+		VARIABLE,
+		ASSIGN,
+		LOGICAL,
+		CALL,
+		GET,
+		SET,
+		THIS;
+
+		private static final ExpressionTag[] VALUES = values();
+
+	}
+
+	private enum LiteralTag {
+
+		NIL,
+		FALSE,
+		TRUE,
+		STRING,
+		NUMBER;
+
+		private static final LiteralTag[] VALUES = values();
+
+	}
+
+	private static class Writer implements Statement.Visitor<Void>, Expression.Visitor<Void> {
+
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		private int line = 0;
+
+		public void writeStatements(List<Statement> statements) {
+			writeVarInt(statements.size());
+			statements.forEach(this::visit);
+		}
+
+		private void writeExpressions(List<Expression> expressions) {
+			writeVarInt(expressions.size());
+			expressions.forEach(this::visit);
+		}
+
+		private void writeOptionalStatement(Optional<Statement> statement) {
+			output.write(statement.isPresent() ? 1 : 0);
+			statement.ifPresent(this::visit);
+		}
+
+		private void writeOptionalExpression(Optional<Expression> expression) {
+			output.write(expression.isPresent() ? 1 : 0);
+			expression.ifPresent(this::visit);
+		}
+
+		public void writeFrame(Frame frame) {
+			writeBindings(frame.parameters());
+			writeBindings(frame.captures());
+			writeVarInt(frame.localCount());
+			writeVarInt(frame.cellCount());
+		}
+
+		private void writeBindings(List<Binding> bindings) {
+			writeVarInt(bindings.size());
+			bindings.forEach(this::writeBinding);
+		}
+
+		private void writeBinding(Binding binding) {
+			output.write(binding.kind().ordinal());
+			writeVarInt(binding.slot());
+		}
+
+		private void writeToken(Token token) {
+			output.write(token.type().ordinal());
+			writeString(token.lexeme());
+			writeLiteral(token.literal());
+
+			/* zigzag encoded difference from the previous line, mostly a single byte */
+			final var delta = token.line() - line;
+			writeVarInt((delta << 1) ^ (delta >> 31));
+			line = token.line();
+		}
+
+		private void writeLiteral(Literal literal) {
+			switch (literal) {
+				case Literal.Nil __ -> output.write(LiteralTag.NIL.ordinal());
+				case Literal.Boolean(final var value) -> output.write((value ? LiteralTag.TRUE : LiteralTag.FALSE).ordinal());
+				case Literal.String(final var value) -> {
+					output.write(LiteralTag.STRING.ordinal());
+					writeString(value);
+				}
+				case Literal.Number(final var value) -> {
+					output.write(LiteralTag.NUMBER.ordinal());
+					writeLong(Double.doubleToRawLongBits(value));
+				}
+			}
+		}
+
+		/**
+		 * Write <code>0</code> followed by the string the first time, then its index plus one.
+		 */
+		private void writeString(String string) {
+			final var index = strings.get(string);
+			if (index != null) {
+				writeVarInt(index + 1);
+				return;
+			}
+
+			strings.put(string, strings.size());
+
+			final var bytes = string.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(0);
+			writeVarInt(bytes.length);
+			output.writeBytes(bytes);
+		}
+
+		public void writeVarInt(int value) {
+			var remaining = value;
+			while ((remaining & ~0x7F) != 0) {
+				output.write((remaining & 0x7F) | 0x80);
+				remaining >>>= 7;
+			}
+
+			output.write(remaining);
+		}
+
+		public void writeInt(int value) {
+			for (var shift = 24; shift >= 0; shift -= 8) {
+				output.write(value >>> shift);
+			}
+		}
+
+		private void writeLong(long value) {
+			writeInt((int) (value >>> 32));
+			writeInt((int) value);
+		}
+
+		private void writeFunction(Statement.Function function) {
+			writeToken(function.name());
+
+			writeVarInt(function.parameters().size());
+			function.parameters().forEach(this::writeToken);
+
+			writeStatements(function.body().statements());
+			writeFrame(function.frame());
+			writeBinding(function.binding());
+		}
+
+		private void tag(StatementTag tag) {
+			output.write(tag.ordinal());
+		}
+
+		private void tag(ExpressionTag tag) {
+			output.write(tag.ordinal());
+		}
+
+		@Override
+		public Void visitExpression(Statement.Expression expression) {
+			tag(StatementTag.EXPRESSION);
+			visit(expression.expression());
+
+			return null;
+		}
+
+		@Override
+		public Void visitPrint(Statement.Print print) {
+			tag(StatementTag.PRINT);
+			visit(print.expression());
+
+			return null;
+		}
+
+		@Override
+		public Void visitVariable(Statement.Variable variable) {
+			tag(StatementTag.VARIABLE);
+			writeToken(variable.name());
+			writeOptionalExpression(variable.initializer());
+			writeBinding(variable.binding());
+
+			return null;
+		}
+
+		@Override
+		public Void visitBlock(Statement.Block block) {
+			tag(StatementTag.BLOCK);
+			writeStatements(block.statements());
+
+			return null;
+		}
+
+		@Override
+		public Void visitIf(Statement.If if_) {
+			tag(StatementTag.IF);
+			visit(if_.condition());
+			visit(if_.thenBranch());
+			writeOptionalStatement(if_.elseBranch());
+
+			return null;
+		}
+
+		@Override
+		public Void visitWhile(Statement.While while_) {
+			tag(StatementTag.WHILE);
+			visit(while_.condition());
+			visit(while_.body());
+
+			return null;
+		}
+
+		@Override
+		public Void visitFunction(Statement.Function function) {
+			tag(StatementTag.FUNCTION);
+			writeFunction(function);
+
+			return null;
+		}
+
+		@Override
+		public Void visitReturn(Statement.Return return_) {
+			tag(StatementTag.RETURN);
+			writeToken(return_.keyword());
+			writeOptionalExpression(return_.value());
+
+			return null;
+		}
+
+		@Override
+		public Void visitClass(Statement.Class class_) {
+			tag(StatementTag.CLASS);
+			writeToken(class_.name());
+
+			writeVarInt(class_.methods().size());
+			class_.methods().forEach(this::writeFunction);
+
+			writeBinding(class_.binding());
+
+			return null;
+		}
+
+		@Override
+		public Void visitLiteral(Expression.Literal literal) {
+			tag(ExpressionTag.LITERAL);
+			writeLiteral(literal.value());
+
+			return null;
+		}
+
+		@Override
+		public Void visitGrouping(Expression.Grouping grouping) {
+			tag(ExpressionTag.GROUPING);
+			visit(grouping.expression());
+
+			return null;
+		}
+
+		@Override
+		public Void visitUnary(Expression.Unary unary) {
+			tag(ExpressionTag.UNARY);
+			writeToken(unary.operator());
+			visit(unary.right());
+
+			return null;
+		}
+
+		@Override
+		public Void visitBinary(Expression.Binary binary) {
+			tag(ExpressionTag.BINARY);
+			visit(binary.left());
+			writeToken(binary.operator());
+			visit(binary.right());
+
+			return null;
+		}
+
+		@Override
+		public Void visitVariable(Expression.Variable variable) {
+			tag(ExpressionTag.VARIABLE);
+			writeToken(variable.name());
+			writeBinding(variable.binding());
+
+			return null;
+		}
+
+		@Override
+		public Void visitAssign(Expression.Assign assign) {
+			tag(ExpressionTag.ASSIGN);
+			writeToken(assign.name());
+			visit(assign.value());
+			writeBinding(assign.binding());
+
+			return null;
+		}
+
+		@Override
+		public Void visitLogical(Expression.Logical logical) {
+			tag(ExpressionTag.LOGICAL);
+			visit(logical.left());
+			writeToken(logical.operator());
+			visit(logical.right());
+
+			return null;
+		}
+
+		@Override
+		public Void visitCall(Expression.Call call) {
+			tag(ExpressionTag.CALL);
+			visit(call.callee());
+			writeToken(call.parenthesis());
+			writeExpressions(call.arguments());
+
+			return null;
+		}
+
+		@Override
+		public Void visitGet(Expression.Get get) {
+			tag(ExpressionTag.GET);
+			visit(get.object());
+			writeToken(get.name());
+
+			return null;
+		}
+
+		@Override
+		public Void visitSet(Expression.Set set) {
+			tag(ExpressionTag.SET);
+			visit(set.object());
+			writeToken(set.name());
+			visit(set.value());
+
+			return null;
+		}
+
+		@Override
+		public Void visitThis(Expression.This this_) {
+			tag(ExpressionTag.THIS);
+			writeToken(this_.keyword());
+			writeBinding(this_.binding());
+
+			return null;
+		}
+
+	}
+
+	/**
+	 * Reads the fields of every node in the order they were written, relying on constructor arguments being evaluated left to right.
+	 */
+	private static class Reader {
+
+		private final ByteBuffer input;
+		private final List<String> strings = new ArrayList<>();
+
+		private int line = 0;
+
+		public Reader(ByteBuffer input) {
+			this.input = input;
+		}
+
+		public List<Statement> readStatements() {
+			final var count = readCount();
+
+			final var statements = new ArrayList<Statement>(count);
+			for (var index = 0; index < count; index++) {
+				statements.add(readStatement());
+			}
+
+			return statements;
+		}
+
+		private List<Expression> readExpressions() {
+			final var count = readCount();
+
+			final var expressions = new ArrayList<Expression>(count);
+			for (var index = 0; index < count; index++) {
+				expressions.add(readExpression());
+			}
+
+			return expressions;
+		}
+
+		private Optional<Statement> readOptionalStatement() {
+			return input.get() == 0 ? Optional.empty() : Optional.of(readStatement());
+		}
+
+		private Optional<Expression> readOptionalExpression() {
+			return input.get() == 0 ? Optional.empty() : Optional.of(readExpression());
+		}
+
+		private Statement readStatement() {
+			return switch (StatementTag.VALUES[input.get()]) {
+				case EXPRESSION -> new Statement.Expression(readExpression());
+				case PRINT -> new Statement.Print(readExpression());
+				case VARIABLE -> new Statement.Variable(readToken(), readOptionalExpression(), readBinding());
+				case BLOCK -> new Statement.Block(readStatements());
+				case IF -> new Statement.If(readExpression(), readStatement(), readOptionalStatement());
+				case WHILE -> new Statement.While(readExpression(), readStatement());
+				case FUNCTION -> readFunction();
+				case RETURN -> new Statement.Return(readToken(), readOptionalExpression());
+				case CLASS -> {
+					final var name = readToken();
+
+					final var count = readCount();
+					final var methods = new ArrayList<Statement.Function>(count);
+					for (var index = 0; index < count; index++) {
+						methods.add(readFunction());
+					}
+
+					yield new Statement.Class(name, methods, readBinding());
+				}
+			};
+		}
+
+		private Statement.Function readFunction() {
+			final var name = readToken();
+
+			final var count = readCount();
+			final var parameters = new ArrayList<Token>(count);
+			for (var index = 0; index < count; index++) {
+				parameters.add(readToken());
+			}
+
+			final var body = new FunctionBody(readStatements());
+
+			return new Statement.Function(name, parameters, body, readFrame(), readBinding());
+		}
+
+		private Expression readExpression() {
+			return switch (ExpressionTag.VALUES[input.get()]) {
+				case LITERAL -> new Expression.Literal(readLiteral());
+				case GROUPING -> new Expression.Grouping(readExpression());
+				case UNARY -> new Expression.Unary(readToken(), readExpression());
+				case BINARY -> new Expression.Binary(readExpression(), readToken(), readExpression());
+				case VARIABLE -> new Expression.Variable(readToken(), readBinding());
+				case ASSIGN -> new Expression.Assign(readToken(), readExpression(), readBinding());
+				case LOGICAL -> new Expression.Logical(readExpression(), readToken(), readExpression());
+				case CALL -> new Expression.Call(readExpression(), readToken(), readExpressions());
+				case GET -> new Expression.Get(readExpression(), readToken());
+				case SET -> new Expression.Set(readExpression(), readToken(), readExpression());
+				case THIS -> new Expression.This(readToken(), readBinding());
+			};
+		}
+
+		public Frame readFrame() {
+			final var frame = new Frame();
+			frame.resolve(readBindings(), readBindings(), readVarInt(), readVarInt());
+
+			return frame;
+		}
+
+		private List<Binding> readBindings() {
+			final var count = readCount();
+
+			final var bindings = new ArrayList<Binding>(count);
+			for (var index = 0; index < count; index++) {
+				bindings.add(readBinding());
+			}
+
+			return List.copyOf(bindings);
+		}
+
+		private Binding readBinding() {
+			final var binding = new Binding();
+			binding.resolve(KINDS[input.get()], readVarInt());
+
+			return binding;
+		}
+
+		private Token readToken() {
+			return new Token(TOKEN_TYPES[input.get()], readString(), readLiteral(), readLine());
+		}
+
+		private int readLine() {
+			final var delta = readVarInt();
+			line += (delta >>> 1) ^ -(delta & 1);
+
+			return line;
+		}
+
+		private Literal readLiteral() {
+			return switch (LiteralTag.VALUES[input.get()]) {
+				case NIL -> new Literal.Nil();
+				case FALSE -> new Literal.Boolean(false);
+				case TRUE -> new Literal.Boolean(true);
+				case STRING -> new Literal.String(readString());
+				case NUMBER -> new Literal.Number(Double.longBitsToDouble(input.getLong()));
+			};
+		}
+
+		private String readString() {
+			final var index = readVarInt();
+			if (index != 0) {
+				return strings.get(index - 1);
+			}
+
+			final var bytes = new byte[readCount()];
+			input.get(bytes);
+
+			final var string = new String(bytes, StandardCharsets.UTF_8);
+			strings.add(string);
+
+			return string;
+		}
+
+		/**
+		 * Read the number of elements or bytes following, which cannot exceed the bytes left as every element takes at least one.
+		 * A damaged count is rejected before anything is allocated for it.
+		 */
+		private int readCount() {
+			final var count = readVarInt();
+			if (count < 0 || count > input.remaining()) {
+				throw new IllegalStateException("invalid count: " + count);
+			}
+
+			return count;
+		}
+
+		public int readVarInt() {
+			var value = 0;
+			for (var shift = 0; ; shift += 7) {
+				final var part = input.get();
+				value |= (part & 0x7F) << shift;
+
+				if (part >= 0) {
+					return value;
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,24 @@
+package interpreter.evaluating;
+
+import interpreter.evaluating.value.LoxValue;
+
+/**
+ * Box of a local variable captured by a closure, shared by the declaring frame and every closure capturing it.
+ */
+public final class Cell {
+
+	private LoxValue value;
+
+	public Cell(LoxValue value) {
+		this.value = value;
+	}
+
+	public LoxValue value() {
+		return value;
+	}
+
+	public void value(LoxValue value) {
+		this.value = value;
+	}
+
+}
@@ -1,94 +1,109 @@
 package interpreter.evaluating;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
-
-import interpreter.evaluating.value.LoxCallable;
 import interpreter.evaluating.value.LoxNil;
 import interpreter.evaluating.value.LoxValue;
-import interpreter.grammar.Token;
-import lombok.NonNull;
-
-public class Environment {
-
-	private final Optional<Environment> enclosing;
-	private final Map<String, LoxValue> values = new HashMap<>();
+import interpreter.parser.Binding;
+import interpreter.parser.Frame;
+
+/**
+ * Call frame of a function or of the script, holding the locals of all of its blocks.
+ * Uncaptured locals are stored directly, captured ones are boxed in {@link Cell cells} that outlive the call.
+ */
+public final class Environment {
+
+	private static final Cell[] NO_CELLS = {};
+
+	private final LoxValue[] locals;
+	private final Cell[] cells;
+	private final Cell[] upvalues;
+
+	/**
+	 * @param frame the layout computed by the {@link Resolver}
+	 * @param upvalues the cells captured by the called closure
+	 */
+	public Environment(Frame frame, Cell[] upvalues) {
+		this.locals = new LoxValue[frame.localCount()];
+		this.cells = frame.cellCount() == 0 ? NO_CELLS : new Cell[frame.cellCount()];
+		this.upvalues = upvalues;
+	}
 
-	public Environment() {
-		this.enclosing = Optional.empty();
+	/**
+	 * Declare a local, giving it a fresh cell if it is captured.
+	 */
+	public void define(Binding binding, LoxValue value) {
+		switch (binding.kind()) {
+			case LOCAL -> locals[binding.slot()] = value;
+			case CELL -> cells[binding.slot()] = new Cell(value);
+			default -> throw new IllegalStateException("not a local: " + binding.kind());
+		}
 	}
 
-	public Environment(@NonNull Environment enclosing) {
-		this.enclosing = Optional.of(enclosing);
+	/**
+	 * Declare a local before its value exists, so that the closures created for the value can capture it.
+	 */
+	public void declare(Binding binding) {
+		define(binding, LoxNil.INSTANCE);
 	}
 
-	public void defineFunction(LoxCallable callable) {
-		define(callable.name(), callable);
+	public LoxValue get(Binding binding) {
+		return switch (binding.kind()) {
+			case LOCAL -> locals[binding.slot()];
+			case CELL -> cells[binding.slot()].value();
+			case UPVALUE -> upvalues[binding.slot()].value();
+			case GLOBAL -> throw new IllegalStateException("not a local");
+		};
 	}
 
-	public void define(String name, LoxValue value) {
-		if (value == null) {
-			value = LoxNil.INSTANCE;
+	public void assign(Binding binding, LoxValue value) {
+		switch (binding.kind()) {
+			case LOCAL -> locals[binding.slot()] = value;
+			case CELL -> cells[binding.slot()].value(value);
+			case UPVALUE -> upvalues[binding.slot()].value(value);
+			case GLOBAL -> throw new IllegalStateException("not a local");
 		}
-
-		values.put(name, value);
 	}
 
-	public LoxValue get(Token name) {
-		final var lexeme = name.lexeme();
-
-		final var value = values.get(lexeme);
-		if (value != null) {
-			return value;
+	/**
+	 * @return the cells a closure created in this frame captures
+	 */
+	public Cell[] capture(Frame frame) {
+		final var captures = frame.captures();
+		if (captures.isEmpty()) {
+			return NO_CELLS;
 		}
 
-		if (enclosing.isPresent()) {
-			return enclosing.get().get(name);
+		final var captured = new Cell[captures.size()];
+		for (var index = 0; index < captured.length; index++) {
+			final var binding = captures.get(index);
+
+			captured[index] = switch (binding.kind()) {
+				case CELL -> cells[binding.slot()];
+				case UPVALUE -> upvalues[binding.slot()];
+				default -> throw new IllegalStateException("not a captured variable: " + binding.kind());
+			};
 		}
 
-		throw new RuntimeError("Undefined variable '%s'.".formatted(lexeme), name);
+		return captured;
 	}
 
-	public LoxValue getAt(int distance, String name) {
-		final var value = ancestor(distance).values.get(name);
-
-		return Objects.requireNonNull(value);
+	public LoxValue local(int slot) {
+		return locals[slot];
 	}
 
-	public void assign(Token name, LoxValue value) {
-		final var lexeme = name.lexeme();
-
-		final var previous = values.replace(lexeme, value);
-		if (previous != null) {
-			return;
-		}
-
-		if (enclosing.isPresent()) {
-			enclosing.get().assign(name, value);
-			return;
-		}
-
-		throw new RuntimeError("Undefined variable '%s'.".formatted(lexeme), name);
+	public void local(int slot, LoxValue value) {
+		locals[slot] = value;
 	}
 
-	public void assignAt(int distance, Token name, LoxValue value) {
-		ancestor(distance).values.put(name.lexeme(), value);
+	public Cell cell(int slot) {
+		return cells[slot];
 	}
 
-	public Environment ancestor(int distance) {
-		var environment = this;
-
-		for (var index = 0; index < distance; index++) {
-			environment = environment.enclosing.get();
-		}
-
-		return Objects.requireNonNull(environment);
+	public void cell(int slot, Cell cell) {
+		cells[slot] = cell;
 	}
 
-	public Environment inner() {
-		return new Environment(this);
+	public Cell upvalue(int slot) {
+		return upvalues[slot];
 	}
 
-}
\ No newline at end of file
+}
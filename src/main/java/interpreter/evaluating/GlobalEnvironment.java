@@ -0,0 +1,68 @@
+package interpreter.evaluating;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import interpreter.evaluating.value.LoxCallable;
+import interpreter.evaluating.value.LoxNil;
+import interpreter.evaluating.value.LoxNumber;
+import interpreter.evaluating.value.LoxValue;
+import interpreter.grammar.Token;
+
+public final class GlobalEnvironment {
+
+	private final Map<String, LoxValue> values = new HashMap<>();
+
+	public GlobalEnvironment() {
+		defineFunction(new SimpleNativeFunction("clock", 0, (__) -> LoxNumber.valueOf(System.currentTimeMillis() / 1000)));
+	}
+
+	public void defineFunction(LoxCallable callable) {
+		define(callable.name(), callable);
+	}
+
+	public void define(String name, LoxValue value) {
+		if (value == null) {
+			value = LoxNil.INSTANCE;
+		}
+
+		values.put(name, value);
+	}
+
+	public LoxValue get(Token name) {
+		final var lexeme = name.lexeme();
+
+		final var value = values.get(lexeme);
+		if (value != null) {
+			return value;
+		}
+
+		throw new RuntimeError("Undefined variable '%s'.".formatted(lexeme), name);
+	}
+
+	/**
+	 * @return the value of the variable, or <code>null</code> if it is not defined
+	 */
+	public LoxValue find(String name) {
+		return values.get(name);
+	}
+
+	/**
+	 * @return whether the variable is defined, its value being replaced only then
+	 */
+	public boolean replace(String name, LoxValue value) {
+		return values.replace(name, value) != null;
+	}
+
+	public void assign(Token name, LoxValue value) {
+		final var lexeme = name.lexeme();
+
+		final var previous = values.replace(lexeme, value);
+		if (previous != null) {
+			return;
+		}
+
+		throw new RuntimeError("Undefined variable '%s'.".formatted(lexeme), name);
+	}
+
+}
@@ -1,53 +1,69 @@
 package interpreter.evaluating;
 
 import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.function.DoubleBinaryOperator;
 
 import interpreter.Lox;
+import interpreter.evaluating.compiler.ClosureCompiler;
+import interpreter.evaluating.compiler.CompiledStatement;
+import interpreter.evaluating.value.InterpretedCallable;
+import interpreter.evaluating.value.InterpretedMethod;
 import interpreter.evaluating.value.LoxBoolean;
 import interpreter.evaluating.value.LoxCallable;
 import interpreter.evaluating.value.LoxClass;
 import interpreter.evaluating.value.LoxFunction;
 import interpreter.evaluating.value.LoxInstance;
+import interpreter.evaluating.value.LoxMethod;
 import interpreter.evaluating.value.LoxNil;
 import interpreter.evaluating.value.LoxNumber;
 import interpreter.evaluating.value.LoxString;
 import interpreter.evaluating.value.LoxValue;
 import interpreter.grammar.Token;
 import interpreter.grammar.TokenType;
+import interpreter.parser.Binding;
+import interpreter.parser.DeferredError;
 import interpreter.parser.Expression;
 import interpreter.parser.Expression.Call;
 import interpreter.parser.Expression.Logical;
+import interpreter.parser.Frame;
 import interpreter.parser.Statement;
-import interpreter.util.DoubleOperators;
-import interpreter.util.function.DoubleComparisonOperator;
 import lombok.NonNull;
 
-public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visitor<Void> {
+public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visitor<LoxValue> {
 
 	private final Lox lox;
-	private final Environment globals = new Environment();
-	private final Map<Expression, Integer> locals = new IdentityHashMap<>();
-	private Environment environment = globals;
+	private final GlobalEnvironment globals = new GlobalEnvironment();
+	private Environment environment = null;
 
 	public Interpreter(
 		@NonNull Lox lox
 	) {
 		this.lox = lox;
+	}
 
-		this.globals.defineFunction(new SimpleNativeFunction("clock", 0, (__) -> new LoxNumber(System.currentTimeMillis() / 1000)));
+	/**
+	 * @param frame the frame of the script, as laid out by the {@link Resolver}
+	 */
+	public void interpret(List<Statement> statements, Frame frame) {
+		try {
+			executeBlock(statements, new Environment(frame, new Cell[0]));
+		} catch (RuntimeError error) {
+			lox.reportRuntime(error.token().line(), error.getMessage());
+		} catch (DeferredError __) {
+			/* reported when the body was parsed */
+		}
 	}
 
-	public void interpret(List<Statement> statements) {
+	/**
+	 * Run a script compiled by the {@link ClosureCompiler}.
+	 */
+	public void interpret(CompiledStatement script, Frame frame) {
 		try {
-			for (final var statement : statements) {
-				execute(statement);
-			}
+			script.execute(new Environment(frame, new Cell[0]));
 		} catch (RuntimeError error) {
 			lox.reportRuntime(error.token().line(), error.getMessage());
+		} catch (DeferredError __) {
+			/* reported when the body was parsed */
 		}
 	}
 
@@ -60,22 +76,38 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 		}
 	}
 
-	public void executeBlock(@NonNull List<Statement> statements, Environment environment) {
+	/**
+	 * @return the value of the <code>return</code> statement that completed the block, or <code>null</code> if it completed normally
+	 */
+	public LoxValue executeBlock(@NonNull List<Statement> statements, Environment environment) {
 		final var previous = this.environment;
 
 		try {
 			this.environment = environment;
 
-			for (final var statement : statements) {
-				execute(statement);
-			}
+			return executeStatements(statements);
 		} finally {
 			this.environment = previous;
 		}
 	}
 
-	public void execute(Statement statement) {
-		visit(statement);
+	private LoxValue executeStatements(List<Statement> statements) {
+		for (final var statement : statements) {
+			final var returned = execute(statement);
+
+			if (returned != null) {
+				return returned;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the returned value if the statement completed with a <code>return</code>, or <code>null</code> otherwise
+	 */
+	public LoxValue execute(Statement statement) {
+		return visit(statement);
 	}
 
 	public LoxValue evaluate(Expression expression) {
@@ -83,14 +115,14 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 	}
 
 	@Override
-	public Void visitExpression(Statement.Expression expression) {
+	public LoxValue visitExpression(Statement.Expression expression) {
 		evaluate(expression.expression());
 
 		return null;
 	}
 
 	@Override
-	public Void visitPrint(Statement.Print print) {
+	public LoxValue visitPrint(Statement.Print print) {
 		final var value = evaluate(print.expression());
 		System.out.println(value.format());
 
@@ -98,55 +130,60 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 	}
 
 	@Override
-	public Void visitVariable(Statement.Variable variable) {
+	public LoxValue visitVariable(Statement.Variable variable) {
 		final var value = variable.initializer()
 			.map(this::evaluate)
 			.orElse(LoxNil.INSTANCE);
 
-		environment.define(variable.name().lexeme(), value);
+		define(variable.binding(), variable.name(), value);
 
 		return null;
 	}
 
 	@Override
-	public Void visitBlock(Statement.Block block) {
-		executeBlock(block.statements(), environment.inner());
-
-		return null;
+	public LoxValue visitBlock(Statement.Block block) {
+		return executeStatements(block.statements());
 	}
 
 	@Override
-	public Void visitIf(Statement.If if_) {
+	public LoxValue visitIf(Statement.If if_) {
 		if (isTruthy(evaluate(if_.condition()))) {
-			execute(if_.thenBranch());
-		} else {
-			if_.elseBranch().ifPresent(this::execute);
+			return execute(if_.thenBranch());
+		}
+
+		if (if_.elseBranch().isPresent()) {
+			return execute(if_.elseBranch().get());
 		}
 
 		return null;
 	}
 
 	@Override
-	public Void visitWhile(Statement.While while_) {
+	public LoxValue visitWhile(Statement.While while_) {
 		while (isTruthy(evaluate(while_.condition()))) {
-			execute(while_.body());
+			final var returned = execute(while_.body());
+
+			if (returned != null) {
+				return returned;
+			}
 		}
 
 		return null;
 	}
 
 	@Override
-	public Void visitFunction(Statement.Function function) {
-		final var callable = new LoxFunction(function, environment, false);
+	public LoxValue visitFunction(Statement.Function function) {
+		declare(function.binding());
 
-		environment.defineFunction(callable);
+		final var callable = new LoxFunction(function, environment.capture(function.frame()), false);
+		initialize(function.binding(), function.name(), callable);
 
 		return null;
 	}
 
 	@Override
 	public LoxValue visitLiteral(Expression.Literal literal) {
-		return literal.value().toValue();
+		return literal.constant();
 	}
 
 	@Override
@@ -162,7 +199,7 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 			case BANG -> LoxBoolean.valueOf(!isTruthy(right));
 			case MINUS -> {
 				if (right instanceof LoxNumber(final var value)) {
-					yield new LoxNumber(-value);
+					yield LoxNumber.valueOf(-value);
 				}
 
 				throw new RuntimeError("Operand must be a number.", unary.operator());
@@ -178,10 +215,9 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 
 		final var operatorToken = binary.operator();
 		return switch (operatorToken.type()) {
-			case MINUS -> applyNumberOperator(left, operatorToken, right, DoubleOperators::substract);
 			case PLUS -> {
 				if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
-					yield new LoxNumber(leftValue + rightValue);
+					yield LoxNumber.valueOf(leftValue + rightValue);
 				}
 
 				if (left instanceof LoxString(final var leftValue) && right instanceof LoxString(final var rightValue)) {
@@ -190,12 +226,13 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 
 				throw new RuntimeError("Operands must be two numbers or two strings.", operatorToken);
 			}
-			case SLASH -> applyNumberOperator(left, operatorToken, right, DoubleOperators::divide);
-			case STAR -> applyNumberOperator(left, operatorToken, right, DoubleOperators::multiply);
-			case GREATER -> applyNumberOperator(left, operatorToken, right, DoubleOperators::greaterThan);
-			case GREATER_EQUAL -> applyNumberOperator(left, operatorToken, right, DoubleOperators::greaterThanOrEqual);
-			case LESS -> applyNumberOperator(left, operatorToken, right, DoubleOperators::lessThan);
-			case LESS_EQUAL -> applyNumberOperator(left, operatorToken, right, DoubleOperators::lessThanOrEqual);
+			case MINUS, SLASH, STAR, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> {
+				if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+					yield applyNumberOperator(operatorToken.type(), leftValue, rightValue);
+				}
+
+				throw new RuntimeError("Operands must be numbers.", operatorToken);
+			}
 			case BANG_EQUAL -> LoxBoolean.valueOf(!left.equals(right));
 			case EQUAL_EQUAL -> LoxBoolean.valueOf(left.equals(right));
 			default -> throw new UnsupportedOperationException();
@@ -206,11 +243,11 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 	public LoxValue visitAssign(Expression.Assign assign) {
 		final var value = evaluate(assign.value());
 
-		final var distance = locals.get(assign);
-		if (distance != null) {
-			environment.assignAt(distance, assign.name(), value);
-		} else {
+		final var binding = assign.binding();
+		if (binding.isGlobal()) {
 			globals.assign(assign.name(), value);
+		} else {
+			environment.assign(binding, value);
 		}
 
 		return value;
@@ -218,7 +255,7 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 
 	@Override
 	public LoxValue visitVariable(Expression.Variable variable) {
-		return lookUpVariable(variable.name(), variable);
+		return lookUpVariable(variable.name(), variable.binding());
 	}
 
 	@Override
@@ -240,45 +277,96 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 
 	@Override
 	public LoxValue visitCall(Call call) {
+		if (call.callee() instanceof Expression.Get get) {
+			return invoke(get, call);
+		}
+
 		final var callee = evaluate(call.callee());
+		final var arguments = evaluateArguments(call);
 
-		final var arguments = call.arguments()
-			.stream()
-			.map(this::evaluate)
-			.toList();
+		return call(callee, arguments, call.parenthesis());
+	}
+
+	/**
+	 * Call a function, a bound method or a class created by this interpreter.
+	 */
+	public LoxValue call(LoxValue callee, LoxValue[] arguments, Token parenthesis) {
+		return switch (callee) {
+			case InterpretedCallable callable -> {
+				checkArity(callable, arguments.length, parenthesis);
+				yield callable.call(this, arguments);
+			}
+			case LoxClass klass -> {
+				checkArity(klass, arguments.length, parenthesis);
+
+				final var instance = new LoxInstance(klass);
+				if (klass.findMethod("init") instanceof InterpretedMethod initializer) {
+					initializer.invoke(this, instance, arguments);
+				}
+
+				yield instance;
+			}
+			default -> throw new RuntimeError("Can only call functions and classes.", parenthesis);
+		};
+	}
 
-		if (!(callee instanceof LoxCallable callable)) {
-			throw new RuntimeError("Can only call functions and classes.", call.parenthesis());
+	/**
+	 * Call a method directly on its receiver, without materializing a bound method.
+	 */
+	private LoxValue invoke(Expression.Get get, Call call) {
+		if (!(evaluate(get.object()) instanceof LoxInstance instance)) {
+			throw new RuntimeError("Only instances have properties.", get.name());
 		}
 
-		if (callable.arity() != arguments.size()) {
-			throw new RuntimeError("Expected %d arguments but got %s.".formatted(callable.arity(), arguments.size()), call.parenthesis());
+		final var field = instance.field(get.name().lexeme(), get.cache());
+		if (field != null) {
+			return call(field, evaluateArguments(call), call.parenthesis());
 		}
 
-		return callable.call(this, arguments);
+		final var method = (InterpretedMethod) instance.method(get.name());
+		final var arguments = evaluateArguments(call);
+
+		checkArity(method, arguments.length, call.parenthesis());
+
+		return method.invoke(this, instance, arguments);
+	}
+
+	private LoxValue[] evaluateArguments(Call call) {
+		final var expressions = call.arguments();
+		final var arguments = new LoxValue[expressions.size()];
+
+		for (var index = 0; index < arguments.length; index++) {
+			arguments[index] = evaluate(expressions.get(index));
+		}
+
+		return arguments;
+	}
+
+	private static void checkArity(LoxCallable callable, int argumentCount, Token parenthesis) {
+		if (callable.arity() != argumentCount) {
+			throw new RuntimeError("Expected %d arguments but got %s.".formatted(callable.arity(), argumentCount), parenthesis);
+		}
 	}
 
 	@Override
-	public Void visitReturn(Statement.Return return_) {
-		final var value = return_.value()
+	public LoxValue visitReturn(Statement.Return return_) {
+		return return_.value()
 			.map(this::evaluate)
 			.orElse(LoxNil.INSTANCE);
-
-		throw new Return(value);
 	}
 
 	@Override
-	public Void visitClass(Statement.Class class_) {
-		environment.define(class_.name().lexeme(), null);
+	public LoxValue visitClass(Statement.Class class_) {
+		declare(class_.binding());
 
-		final var methods = new HashMap<String, LoxFunction>();
+		final var methods = new HashMap<String, LoxMethod>();
 		for (final var method : class_.methods()) {
-			final var function = new LoxFunction(method, environment, "init".equals(method.name().lexeme()));
+			final var function = new LoxFunction(method, environment.capture(method.frame()), "init".equals(method.name().lexeme()));
 			methods.put(method.name().lexeme(), function);
 		}
 
 		final var klass = new LoxClass(class_.name().lexeme(), methods);
-		environment.assign(class_.name(), klass);
+		initialize(class_.binding(), class_.name(), klass);
 
 		return null;
 	}
@@ -288,7 +376,7 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 		final var object = evaluate(get.object());
 
 		if (object instanceof LoxInstance instance) {
-			return instance.get(get.name());
+			return instance.get(get.name(), get.cache());
 		}
 
 		throw new RuntimeError("Only instances have properties.", get.name());
@@ -302,28 +390,47 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 		}
 
 		final var value = evaluate(set.value());
-		instance.set(set.name(), value);
+		instance.set(set.name(), value, set.cache());
 
 		return value;
 	}
 
 	@Override
 	public LoxValue visitThis(Expression.This this_) {
-		return lookUpVariable(this_.keyword(), this_);
+		return lookUpVariable(this_.keyword(), this_.binding());
 	}
 
-	public void resolve(Expression expression, int depth) {
-		locals.put(expression, depth);
+	public LoxValue lookUpVariable(Token name, Binding binding) {
+		if (binding.isGlobal()) {
+			return globals.get(name);
+		}
+
+		return environment.get(binding);
 	}
 
-	public LoxValue lookUpVariable(Token name, Expression expression) {
-		final var distance = locals.get(expression);
+	private void define(Binding binding, Token name, LoxValue value) {
+		if (binding.isGlobal()) {
+			globals.define(name.lexeme(), value);
+		} else {
+			environment.define(binding, value);
+		}
+	}
 
-		if (distance != null) {
-			return environment.getAt(distance, name.lexeme());
+	/**
+	 * Declare a function or class before creating it, so that its closures can capture it.
+	 */
+	private void declare(Binding binding) {
+		if (!binding.isGlobal()) {
+			environment.declare(binding);
 		}
+	}
 
-		return globals.get(name);
+	private void initialize(Binding binding, Token name, LoxValue value) {
+		if (binding.isGlobal()) {
+			globals.define(name.lexeme(), value);
+		} else {
+			environment.assign(binding, value);
+		}
 	}
 
 	public boolean isTruthy(LoxValue value) {
@@ -334,26 +441,27 @@ public class Interpreter implements Expression.Visitor<LoxValue>, Statement.Visi
 		};
 	}
 
-	private LoxNumber applyNumberOperator(LoxValue left, Token token, LoxValue right, DoubleBinaryOperator operator) {
-		if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
-			return new LoxNumber(operator.applyAsDouble(leftValue, rightValue));
-		}
-
-		throw new RuntimeError("Operands must be numbers.", token);
-	}
-
-	private LoxBoolean applyNumberOperator(LoxValue left, Token token, LoxValue right, DoubleComparisonOperator operator) {
-		if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
-			return LoxBoolean.valueOf(operator.applyAsDouble(leftValue, rightValue));
-		}
-
-		throw new RuntimeError("Operands must be numbers.", token);
+	private static LoxValue applyNumberOperator(TokenType operator, double left, double right) {
+		return switch (operator) {
+			case MINUS -> LoxNumber.valueOf(left - right);
+			case SLASH -> LoxNumber.valueOf(left / right);
+			case STAR -> LoxNumber.valueOf(left * right);
+			case GREATER -> LoxBoolean.valueOf(left > right);
+			case GREATER_EQUAL -> LoxBoolean.valueOf(left >= right);
+			case LESS -> LoxBoolean.valueOf(left < right);
+			case LESS_EQUAL -> LoxBoolean.valueOf(left <= right);
+			default -> throw new UnsupportedOperationException();
+		};
 	}
 
 	public Lox lox() {
 		return lox;
 	}
 
+	public GlobalEnvironment globals() {
+		return globals;
+	}
+
 	public Environment environment() {
 		return environment;
 	}
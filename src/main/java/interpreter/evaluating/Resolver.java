@@ -1,32 +1,50 @@
 package interpreter.evaluating;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.function.Consumer;
 
 import interpreter.Lox;
 import interpreter.grammar.Token;
+import interpreter.parser.Binding;
+import interpreter.parser.DeferredError;
 import interpreter.parser.Expression;
+import interpreter.parser.Frame;
 import interpreter.parser.Statement;
 import lombok.NonNull;
 
 public class Resolver implements Statement.Visitor<Void>, Expression.Visitor<Void> {
 
-	private final Interpreter interpreter;
 	private final Lox lox;
 
 	private @NonNull FunctionType currentFunctionType = FunctionType.NONE;
 	private @NonNull ClassType currentClassType = ClassType.NONE;
 
-	private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+	private FunctionScope currentFunction = null;
 
-	public Resolver(Interpreter interpreter) {
-		this.interpreter = interpreter;
-		this.lox = interpreter.lox();
+	public Resolver(Lox lox) {
+		this.lox = lox;
 	}
 
-	public void resolve(List<Statement> statements) {
+	/**
+	 * Resolve a whole program, whose top-level blocks are laid out in a frame of their own.
+	 *
+	 * @return the frame of the script
+	 */
+	public Frame resolveScript(List<Statement> statements) {
+		final var frame = new Frame();
+
+		currentFunction = new FunctionScope(null);
+		resolve(statements);
+		endFunction(frame);
+
+		return frame;
+	}
+
+	private void resolve(List<Statement> statements) {
 		statements.forEach(this::resolve);
 	}
 
@@ -39,62 +57,180 @@ public class Resolver implements Statement.Visitor<Void>, Expression.Visitor<Voi
 	}
 
 	private void beginScope() {
-		scopes.push(new HashMap<>());
+		currentFunction.scopes.push(new Scope());
 	}
 
 	private void endScope() {
-		scopes.pop();
+		currentFunction.scopes.pop();
+	}
+
+	private boolean isGlobalScope() {
+		return currentFunction.enclosing == null && currentFunction.scopes.isEmpty();
 	}
 
-	private void declare(Token name) {
-		if (scopes.isEmpty()) {
+	private void declare(Token name, Binding binding) {
+		if (isGlobalScope()) {
 			return;
 		}
 
-		final var scope = scopes.peek();
-		if (scope.containsKey(name.lexeme())) {
+		final var scope = currentFunction.scopes.peek();
+		if (scope.locals.containsKey(name.lexeme())) {
 			lox.error(name, "Already a variable with this name in this scope.");
 		}
 
-		scope.put(name.lexeme(), false);
+		declare(name.lexeme(), binding);
+	}
+
+	private Local declare(String name, Binding binding) {
+		final var local = new Local();
+		local.uses.add(binding);
+
+		currentFunction.scopes.peek().locals.put(name, local);
+		currentFunction.locals.add(local);
+
+		return local;
 	}
 
 	private void define(Token name) {
-		if (scopes.isEmpty()) {
+		if (isGlobalScope()) {
 			return;
 		}
 
-		final var scope = scopes.peek();
-		scope.put(name.lexeme(), true);
+		currentFunction.scopes.peek().locals.get(name.lexeme()).defined = true;
 	}
 
-	private void resolveLocal(Expression expression, Token name) {
-		for (var index = scopes.size() - 1; index >= 0; index--) {
-			if (scopes.get(index).containsKey(name.lexeme())) {
-				interpreter.resolve(expression, scopes.size() - 1 - index);
-				return;
-			}
+	private void resolveLocal(Binding binding, Token name) {
+		final var local = currentFunction.find(name.lexeme());
+		if (local != null) {
+			local.uses.add(binding);
+			return;
+		}
+
+		final var upvalue = resolveUpvalue(currentFunction, name.lexeme());
+		if (upvalue != -1) {
+			binding.resolve(Binding.Kind.UPVALUE, upvalue);
+		}
+	}
+
+	/**
+	 * Capture a variable of an enclosing function, through the closures of every function in between.
+	 *
+	 * @return the index of the captured variable in the closure, or <code>-1</code> if the variable is global
+	 */
+	private int resolveUpvalue(FunctionScope function, String name) {
+		final var enclosing = function.enclosing;
+		if (enclosing == null) {
+			return -1;
+		}
+
+		final var local = enclosing.find(name);
+		if (local != null) {
+			local.captured = true;
+
+			return function.capture(local, local.uses::add);
+		}
+
+		final var index = resolveUpvalue(enclosing, name);
+		if (index == -1) {
+			return -1;
+		}
+
+		return function.capture(enclosing.capturedLocals.get(index), (capture) -> capture.resolve(Binding.Kind.UPVALUE, index));
+	}
+
+	private void resolveFunction(Statement.Function declaration, FunctionType type) {
+		final var body = declaration.body();
+
+		if (!body.isParsed()) {
+			final var classType = currentClassType;
+
+			body.apply((statements) -> {
+				resolveDeferred(declaration, type, classType, statements);
+				return statements;
+			});
+
+			return;
+		}
+
+		resolveFunction(declaration, type, body.statements());
+	}
+
+	/**
+	 * Resolve a body parsed on first use, which can only belong to a function or method declared at the top level.
+	 *
+	 * @throws DeferredError if the body has resolution errors
+	 */
+	private void resolveDeferred(Statement.Function declaration, FunctionType type, ClassType classType, List<Statement> statements) {
+		final var hadError = lox.hadError();
+
+		final var enclosingFunction = currentFunction;
+		final var enclosingFunctionType = currentFunctionType;
+		final var enclosingClassType = currentClassType;
+
+		currentFunction = new FunctionScope(null);
+		currentFunctionType = FunctionType.NONE;
+		currentClassType = classType;
+
+		try {
+			resolveFunction(declaration, type, statements);
+		} finally {
+			currentFunction = enclosingFunction;
+			currentFunctionType = enclosingFunctionType;
+			currentClassType = enclosingClassType;
+		}
+
+		if (!hadError && lox.hadError()) {
+			throw new DeferredError();
 		}
 	}
 
-	private void resolveFunction(Statement.Function function, FunctionType type) {
+	private void resolveFunction(Statement.Function declaration, FunctionType type, List<Statement> body) {
 		final var enclosingType = currentFunctionType;
 		currentFunctionType = type;
 
+		currentFunction = new FunctionScope(currentFunction);
 		beginScope();
 
-		for (final var parameter : function.parameters()) {
-			declare(parameter);
+		if (FunctionType.METHOD.equals(type) || FunctionType.INITIALIZER.equals(type)) {
+			/* the receiver is passed as the first parameter of the method */
+			final var receiver = new Binding();
+			declare("this", receiver).defined = true;
+			currentFunction.parameters.add(receiver);
+		}
+
+		for (final var parameter : declaration.parameters()) {
+			final var binding = new Binding();
+			declare(parameter, binding);
 			define(parameter);
+			currentFunction.parameters.add(binding);
 		}
 
-		resolve(function.body());
+		resolve(body);
 
 		endScope();
+		endFunction(declaration.frame());
+		currentFunction = currentFunction.enclosing;
 
 		currentFunctionType = enclosingType;
 	}
 
+	/**
+	 * Lay out the frame of the function once all of its locals are known to be captured or not.
+	 */
+	private void endFunction(Frame frame) {
+		var localCount = 0;
+		var cellCount = 0;
+
+		for (final var local : currentFunction.locals) {
+			final var kind = local.captured ? Binding.Kind.CELL : Binding.Kind.LOCAL;
+			final var slot = local.captured ? cellCount++ : localCount++;
+
+			local.uses.forEach((binding) -> binding.resolve(kind, slot));
+		}
+
+		frame.resolve(List.copyOf(currentFunction.parameters), List.copyOf(currentFunction.captures), localCount, cellCount);
+	}
+
 	@Override
 	public Void visitBlock(Statement.Block block) {
 		beginScope();
@@ -106,7 +242,7 @@ public class Resolver implements Statement.Visitor<Void>, Expression.Visitor<Voi
 
 	@Override
 	public Void visitVariable(Statement.Variable variable) {
-		declare(variable.name());
+		declare(variable.name(), variable.binding());
 		variable.initializer().ifPresent(this::resolve);
 		define(variable.name());
 
@@ -115,11 +251,11 @@ public class Resolver implements Statement.Visitor<Void>, Expression.Visitor<Voi
 
 	@Override
 	public Void visitVariable(Expression.Variable variable) {
-		if (!scopes.isEmpty() && scopes.peek().get(variable.name().lexeme()) == Boolean.FALSE) {
+		if (!currentFunction.scopes.isEmpty() && currentFunction.scopes.peek().isDeclaredButNotDefined(variable.name().lexeme())) {
 			lox.error(variable.name(), "Can't read local variable in its own initializer.");
 		}
 
-		resolveLocal(variable, variable.name());
+		resolveLocal(variable.binding(), variable.name());
 
 		return null;
 	}
@@ -127,14 +263,14 @@ public class Resolver implements Statement.Visitor<Void>, Expression.Visitor<Voi
 	@Override
 	public Void visitAssign(Expression.Assign assign) {
 		resolve(assign.value());
-		resolveLocal(assign, assign.name());
+		resolveLocal(assign.binding(), assign.name());
 
 		return null;
 	}
 
 	@Override
 	public Void visitFunction(Statement.Function function) {
-		declare(function.name());
+		declare(function.name(), function.binding());
 		define(function.name());
 
 		resolveFunction(function, FunctionType.FUNCTION);
@@ -241,12 +377,9 @@ public class Resolver implements Statement.Visitor<Void>, Expression.Visitor<Voi
 		final var enclosingType = currentClassType;
 		currentClassType = ClassType.CLASS;
 
-		declare(class_.name());
+		declare(class_.name(), class_.binding());
 		define(class_.name());
 
-		beginScope();
-		scopes.peek().put("this", true);
-
 		for (final var method : class_.methods()) {
 			var declaration = FunctionType.METHOD;
 			if (method.name().lexeme().equals("init")) {
@@ -256,8 +389,6 @@ public class Resolver implements Statement.Visitor<Void>, Expression.Visitor<Voi
 			resolveFunction(method, declaration);
 		}
 
-		endScope();
-
 		currentClassType = enclosingType;
 
 		return null;
@@ -284,11 +415,76 @@ public class Resolver implements Statement.Visitor<Void>, Expression.Visitor<Voi
 			lox.error(this_.keyword(), "Can't use 'this' outside of a class.");
 		}
 
-		resolveLocal(this_, this_.keyword());
+		resolveLocal(this_.binding(), this_.keyword());
 
 		return null;
 	}
 
+	private static class FunctionScope {
+
+		private final FunctionScope enclosing;
+		private final Stack<Scope> scopes = new Stack<>();
+		private final List<Local> locals = new ArrayList<>();
+		private final List<Binding> parameters = new ArrayList<>();
+		private final List<Binding> captures = new ArrayList<>();
+		private final List<Local> capturedLocals = new ArrayList<>();
+
+		public FunctionScope(FunctionScope enclosing) {
+			this.enclosing = enclosing;
+		}
+
+		public Local find(String name) {
+			for (var index = scopes.size() - 1; index >= 0; index--) {
+				final var local = scopes.get(index).locals.get(name);
+
+				if (local != null) {
+					return local;
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 * @return the index of the captured variable in the closure, shared by every reference to it
+		 */
+		public int capture(Local local, Consumer<Binding> resolution) {
+			final var existing = capturedLocals.indexOf(local);
+			if (existing != -1) {
+				return existing;
+			}
+
+			final var capture = new Binding();
+			resolution.accept(capture);
+
+			captures.add(capture);
+			capturedLocals.add(local);
+
+			return captures.size() - 1;
+		}
+
+	}
+
+	private static class Scope {
+
+		private final Map<String, Local> locals = new HashMap<>();
+
+		public boolean isDeclaredButNotDefined(String name) {
+			final var local = locals.get(name);
+
+			return local != null && !local.defined;
+		}
+
+	}
+
+	private static class Local {
+
+		private final List<Binding> uses = new ArrayList<>();
+		private boolean defined = false;
+		private boolean captured = false;
+
+	}
+
 	public enum FunctionType {
 
 		NONE,
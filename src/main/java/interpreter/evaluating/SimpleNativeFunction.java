@@ -1,19 +1,25 @@
 package interpreter.evaluating;
 
-import java.util.List;
 import java.util.function.Function;
 
-import interpreter.evaluating.value.LoxCallable;
+import interpreter.evaluating.value.InterpretedCallable;
 import interpreter.evaluating.value.LoxValue;
 
 public record SimpleNativeFunction(
 	String name,
 	int arity,
-	Function<List<LoxValue>, LoxValue> impl
-) implements LoxCallable {
+	Function<LoxValue[], LoxValue> impl
+) implements InterpretedCallable {
 
 	@Override
-	public LoxValue call(Interpreter interpreter, List<LoxValue> arguments) {
+	public LoxValue call(Interpreter interpreter, LoxValue[] arguments) {
+		return call(arguments);
+	}
+
+	/**
+	 * Natives do not depend on the interpreter, so every engine can call them directly.
+	 */
+	public LoxValue call(LoxValue[] arguments) {
 		return impl.apply(arguments);
 	}
 
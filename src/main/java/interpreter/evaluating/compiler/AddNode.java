@@ -0,0 +1,125 @@
+package interpreter.evaluating.compiler;
+
+import interpreter.evaluating.Environment;
+import interpreter.evaluating.RuntimeError;
+import interpreter.evaluating.value.LoxNumber;
+import interpreter.evaluating.value.LoxString;
+import interpreter.evaluating.value.LoxValue;
+import interpreter.grammar.Token;
+
+/**
+ * Addition specializing itself on the operands it observes.
+ * The first evaluation picks numbers or strings, and a failed speculation rewrites the node to the generic case for good.
+ */
+final class AddNode implements CompiledExpression {
+
+	private final CompiledExpression left;
+	private final Token operator;
+	private final CompiledExpression right;
+	private Specialization specialization = Specialization.UNINITIALIZED;
+
+	public AddNode(CompiledExpression left, Token operator, CompiledExpression right) {
+		this.left = left;
+		this.operator = operator;
+		this.right = right;
+	}
+
+	@Override
+	public LoxValue evaluate(Environment environment) {
+		return switch (specialization) {
+			case NUMBERS -> {
+				final double leftNumber;
+				try {
+					leftNumber = left.evaluateDouble(environment);
+				} catch (NotANumber notANumber) {
+					yield generalize(notANumber.value(), right.evaluate(environment));
+				}
+
+				try {
+					yield LoxNumber.valueOf(leftNumber + right.evaluateDouble(environment));
+				} catch (NotANumber notANumber) {
+					yield generalize(LoxNumber.valueOf(leftNumber), notANumber.value());
+				}
+			}
+			case STRINGS -> {
+				final var leftValue = left.evaluate(environment);
+				final var rightValue = right.evaluate(environment);
+
+				if (leftValue instanceof LoxString(final var leftString) && rightValue instanceof LoxString(final var rightString)) {
+					yield new LoxString(leftString + rightString);
+				}
+
+				yield generalize(leftValue, rightValue);
+			}
+			case UNINITIALIZED -> {
+				final var leftValue = left.evaluate(environment);
+				final var rightValue = right.evaluate(environment);
+
+				specialization = Specialization.of(leftValue, rightValue);
+
+				yield add(leftValue, rightValue);
+			}
+			case GENERIC -> add(left.evaluate(environment), right.evaluate(environment));
+		};
+	}
+
+	@Override
+	public double evaluateDouble(Environment environment) {
+		if (!Specialization.NUMBERS.equals(specialization)) {
+			return CompiledExpression.super.evaluateDouble(environment);
+		}
+
+		final double leftNumber;
+		try {
+			leftNumber = left.evaluateDouble(environment);
+		} catch (NotANumber notANumber) {
+			throw new NotANumber(generalize(notANumber.value(), right.evaluate(environment)));
+		}
+
+		try {
+			return leftNumber + right.evaluateDouble(environment);
+		} catch (NotANumber notANumber) {
+			throw new NotANumber(generalize(LoxNumber.valueOf(leftNumber), notANumber.value()));
+		}
+	}
+
+	private LoxValue generalize(LoxValue leftValue, LoxValue rightValue) {
+		specialization = Specialization.GENERIC;
+
+		return add(leftValue, rightValue);
+	}
+
+	private LoxValue add(LoxValue leftValue, LoxValue rightValue) {
+		if (leftValue instanceof LoxNumber(final var leftNumber) && rightValue instanceof LoxNumber(final var rightNumber)) {
+			return LoxNumber.valueOf(leftNumber + rightNumber);
+		}
+
+		if (leftValue instanceof LoxString(final var leftString) && rightValue instanceof LoxString(final var rightString)) {
+			return new LoxString(leftString + rightString);
+		}
+
+		throw new RuntimeError("Operands must be two numbers or two strings.", operator);
+	}
+
+	private enum Specialization {
+
+		UNINITIALIZED,
+		NUMBERS,
+		STRINGS,
+		GENERIC;
+
+		public static Specialization of(LoxValue leftValue, LoxValue rightValue) {
+			if (leftValue instanceof LoxNumber && rightValue instanceof LoxNumber) {
+				return NUMBERS;
+			}
+
+			if (leftValue instanceof LoxString && rightValue instanceof LoxString) {
+				return STRINGS;
+			}
+
+			return GENERIC;
+		}
+
+	}
+
+}
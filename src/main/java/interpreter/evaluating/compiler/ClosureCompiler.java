@@ -0,0 +1,550 @@
+package interpreter.evaluating.compiler;
+
+import java.util.HashMap;
+import java.util.List;
+
+import interpreter.evaluating.Cell;
+import interpreter.evaluating.Environment;
+import interpreter.evaluating.GlobalEnvironment;
+import interpreter.evaluating.Interpreter;
+import interpreter.evaluating.RuntimeError;
+import interpreter.evaluating.value.InterpretedMethod;
+import interpreter.evaluating.value.LoxBoolean;
+import interpreter.evaluating.value.LoxCallable;
+import interpreter.evaluating.value.LoxClass;
+import interpreter.evaluating.value.LoxFunction;
+import interpreter.evaluating.value.LoxInstance;
+import interpreter.evaluating.value.LoxMethod;
+import interpreter.evaluating.value.LoxNil;
+import interpreter.evaluating.value.LoxNumber;
+import interpreter.evaluating.value.LoxValue;
+import interpreter.grammar.Token;
+import interpreter.grammar.TokenType;
+import interpreter.parser.Binding;
+import interpreter.parser.Expression;
+import interpreter.parser.Statement;
+import lombok.NonNull;
+
+/**
+ * Compile a resolved syntax tree into a tree of pre-bound Java closures working on the {@link Interpreter} frames.
+ * Every child, binding and operator is resolved once at compile time, leaving only the work itself at runtime.
+ */
+public class ClosureCompiler implements Statement.Visitor<CompiledStatement>, Expression.Visitor<CompiledExpression> {
+
+	private final Interpreter interpreter;
+	private final GlobalEnvironment globals;
+
+	public ClosureCompiler(
+		@NonNull Interpreter interpreter
+	) {
+		this.interpreter = interpreter;
+		this.globals = interpreter.globals();
+	}
+
+	/**
+	 * Compile a whole script, and the bodies of all of its functions and methods ahead of their first call.
+	 */
+	public CompiledStatement compileScript(List<Statement> statements) {
+		if (statements.isEmpty()) {
+			return (__) -> null;
+		}
+
+		return sequence(statements);
+	}
+
+	public CompiledStatement compileBody(Statement.Function function) {
+		final var body = function.body().statements();
+
+		if (body.isEmpty()) {
+			return (__) -> null;
+		}
+
+		return sequence(body);
+	}
+
+	private CompiledStatement compile(Statement statement) {
+		return visit(statement);
+	}
+
+	private CompiledExpression compile(Expression expression) {
+		return visit(expression);
+	}
+
+	private CompiledStatement sequence(List<Statement> statements) {
+		final var compiled = statements.stream()
+			.map(this::compile)
+			.toArray(CompiledStatement[]::new);
+
+		if (compiled.length == 1) {
+			return compiled[0];
+		}
+
+		return (environment) -> {
+			for (final var statement : compiled) {
+				final var result = statement.execute(environment);
+
+				if (result != null) {
+					return result;
+				}
+			}
+
+			return null;
+		};
+	}
+
+	@Override
+	public CompiledStatement visitExpression(Statement.Expression expression) {
+		final var compiled = compile(expression.expression());
+
+		return (environment) -> {
+			compiled.evaluate(environment);
+			return null;
+		};
+	}
+
+	@Override
+	public CompiledStatement visitPrint(Statement.Print print) {
+		final var compiled = compile(print.expression());
+
+		return (environment) -> {
+			System.out.println(compiled.evaluate(environment).format());
+			return null;
+		};
+	}
+
+	@Override
+	public CompiledStatement visitVariable(Statement.Variable variable) {
+		final var initializer = variable.initializer()
+			.map(this::compile)
+			.orElse((__) -> LoxNil.INSTANCE);
+
+		final var slot = variable.binding().slot();
+
+		final var name = variable.name().lexeme();
+
+		return switch (variable.binding().kind()) {
+			case GLOBAL -> (environment) -> {
+				globals.define(name, initializer.evaluate(environment));
+				return null;
+			};
+			case LOCAL -> (environment) -> {
+				environment.local(slot, initializer.evaluate(environment));
+				return null;
+			};
+			case CELL -> (environment) -> {
+				environment.cell(slot, new Cell(initializer.evaluate(environment)));
+				return null;
+			};
+			default -> throw new IllegalStateException("not a local: " + variable.binding().kind());
+		};
+	}
+
+	@Override
+	public CompiledStatement visitBlock(Statement.Block block) {
+		return sequence(block.statements());
+	}
+
+	@Override
+	public CompiledStatement visitIf(Statement.If if_) {
+		final var condition = compile(if_.condition());
+		final var thenBranch = compile(if_.thenBranch());
+
+		if (if_.elseBranch().isEmpty()) {
+			return (environment) -> {
+				if (isTruthy(condition.evaluate(environment))) {
+					return thenBranch.execute(environment);
+				}
+
+				return null;
+			};
+		}
+
+		final var elseBranch = compile(if_.elseBranch().get());
+
+		return (environment) -> {
+			if (isTruthy(condition.evaluate(environment))) {
+				return thenBranch.execute(environment);
+			}
+
+			return elseBranch.execute(environment);
+		};
+	}
+
+	@Override
+	public CompiledStatement visitWhile(Statement.While while_) {
+		final var condition = compile(while_.condition());
+		final var body = compile(while_.body());
+
+		return (environment) -> {
+			while (isTruthy(condition.evaluate(environment))) {
+				final var result = body.execute(environment);
+
+				if (result != null) {
+					return result;
+				}
+			}
+
+			return null;
+		};
+	}
+
+	@Override
+	public CompiledStatement visitFunction(Statement.Function function) {
+		precompile(function);
+
+		final var binding = function.binding();
+		final var frame = function.frame();
+
+		if (binding.isGlobal()) {
+			final var name = function.name().lexeme();
+
+			return (environment) -> {
+				globals.define(name, new LoxFunction(function, environment.capture(frame), false));
+				return null;
+			};
+		}
+
+		return (environment) -> {
+			environment.declare(binding);
+			environment.assign(binding, new LoxFunction(function, environment.capture(frame), false));
+			return null;
+		};
+	}
+
+	/**
+	 * Compile the body ahead of the first call, unless its parsing is deferred until then.
+	 */
+	private void precompile(Statement.Function function) {
+		if (function.body().isParsed()) {
+			function.profile().precompiled(interpreter, compileBody(function));
+		}
+	}
+
+	@Override
+	public CompiledStatement visitReturn(Statement.Return return_) {
+		if (return_.value().isEmpty()) {
+			return (__) -> LoxNil.INSTANCE;
+		}
+
+		final var value = compile(return_.value().get());
+
+		return value::evaluate;
+	}
+
+	@Override
+	public CompiledStatement visitClass(Statement.Class class_) {
+		final var name = class_.name().lexeme();
+		final var binding = class_.binding();
+
+		final var methods = class_.methods();
+		methods.forEach(this::precompile);
+
+		final CompiledExpression create = (environment) -> {
+			final var callables = new HashMap<String, LoxMethod>();
+			for (final var method : methods) {
+				final var methodName = method.name().lexeme();
+
+				callables.put(methodName, new LoxFunction(method, environment.capture(method.frame()), "init".equals(methodName)));
+			}
+
+			return new LoxClass(name, callables);
+		};
+
+		if (binding.isGlobal()) {
+			return (environment) -> {
+				globals.define(name, create.evaluate(environment));
+				return null;
+			};
+		}
+
+		return (environment) -> {
+			environment.declare(binding);
+			environment.assign(binding, create.evaluate(environment));
+			return null;
+		};
+	}
+
+	@Override
+	public CompiledExpression visitLiteral(Expression.Literal literal) {
+		final var value = literal.constant();
+
+		if (value instanceof LoxNumber number) {
+			return new NumberLiteral(number);
+		}
+
+		return (__) -> value;
+	}
+
+	@Override
+	public CompiledExpression visitGrouping(Expression.Grouping grouping) {
+		return compile(grouping.expression());
+	}
+
+	@Override
+	public CompiledExpression visitUnary(Expression.Unary unary) {
+		final var operator = unary.operator();
+		final var right = compile(unary.right());
+
+		return switch (operator.type()) {
+			case BANG -> (environment) -> LoxBoolean.valueOf(!isTruthy(right.evaluate(environment)));
+			case MINUS -> (CompiledNumber) (environment) -> {
+				try {
+					return -right.evaluateDouble(environment);
+				} catch (NotANumber __) {
+					throw new RuntimeError("Operand must be a number.", operator);
+				}
+			};
+			default -> throw new UnsupportedOperationException();
+		};
+	}
+
+	@Override
+	public CompiledExpression visitBinary(Expression.Binary binary) {
+		final var left = compile(binary.left());
+		final var operator = binary.operator();
+		final var right = compile(binary.right());
+
+		return switch (operator.type()) {
+			case MINUS -> (CompiledNumber) (environment) -> leftNumber(left, right, operator, environment) - rightNumber(right, operator, environment);
+			case PLUS -> new AddNode(left, operator, right);
+			case SLASH -> (CompiledNumber) (environment) -> leftNumber(left, right, operator, environment) / rightNumber(right, operator, environment);
+			case STAR -> (CompiledNumber) (environment) -> leftNumber(left, right, operator, environment) * rightNumber(right, operator, environment);
+			case GREATER -> (environment) -> LoxBoolean.valueOf(leftNumber(left, right, operator, environment) > rightNumber(right, operator, environment));
+			case GREATER_EQUAL -> (environment) -> LoxBoolean.valueOf(leftNumber(left, right, operator, environment) >= rightNumber(right, operator, environment));
+			case LESS -> (environment) -> LoxBoolean.valueOf(leftNumber(left, right, operator, environment) < rightNumber(right, operator, environment));
+			case LESS_EQUAL -> (environment) -> LoxBoolean.valueOf(leftNumber(left, right, operator, environment) <= rightNumber(right, operator, environment));
+			case BANG_EQUAL -> new EqualityNode(left, right, true);
+			case EQUAL_EQUAL -> new EqualityNode(left, right, false);
+			default -> throw new UnsupportedOperationException();
+		};
+	}
+
+	/**
+	 * Evaluate the left operand of a numeric operator, reporting a non-number only once the right operand was evaluated too.
+	 */
+	private static double leftNumber(CompiledExpression left, CompiledExpression right, Token operator, Environment environment) {
+		try {
+			return left.evaluateDouble(environment);
+		} catch (NotANumber __) {
+			right.evaluate(environment);
+			throw numbersExpected(operator);
+		}
+	}
+
+	private static double rightNumber(CompiledExpression right, Token operator, Environment environment) {
+		try {
+			return right.evaluateDouble(environment);
+		} catch (NotANumber __) {
+			throw numbersExpected(operator);
+		}
+	}
+
+	@Override
+	public CompiledExpression visitVariable(Expression.Variable variable) {
+		return lookUpVariable(variable.name(), variable.binding());
+	}
+
+	@Override
+	public CompiledExpression visitAssign(Expression.Assign assign) {
+		final var name = assign.name();
+		final var binding = assign.binding();
+		final var value = compile(assign.value());
+
+		final var slot = binding.slot();
+
+		return switch (binding.kind()) {
+			case GLOBAL -> (environment) -> {
+				final var result = value.evaluate(environment);
+				globals.assign(name, result);
+
+				return result;
+			};
+			case LOCAL -> (environment) -> {
+				final var result = value.evaluate(environment);
+				environment.local(slot, result);
+
+				return result;
+			};
+			case CELL -> (environment) -> {
+				final var result = value.evaluate(environment);
+				environment.cell(slot).value(result);
+
+				return result;
+			};
+			case UPVALUE -> (environment) -> {
+				final var result = value.evaluate(environment);
+				environment.upvalue(slot).value(result);
+
+				return result;
+			};
+		};
+	}
+
+	@Override
+	public CompiledExpression visitLogical(Expression.Logical logical) {
+		final var left = compile(logical.left());
+		final var right = compile(logical.right());
+
+		if (TokenType.OR.equals(logical.operator().type())) {
+			return (environment) -> {
+				final var value = left.evaluate(environment);
+
+				if (isTruthy(value)) {
+					return value;
+				}
+
+				return right.evaluate(environment);
+			};
+		}
+
+		return (environment) -> {
+			final var value = left.evaluate(environment);
+
+			if (!isTruthy(value)) {
+				return value;
+			}
+
+			return right.evaluate(environment);
+		};
+	}
+
+	@Override
+	public CompiledExpression visitCall(Expression.Call call) {
+		final var parenthesis = call.parenthesis();
+		final var arguments = call.arguments()
+			.stream()
+			.map(this::compile)
+			.toArray(CompiledExpression[]::new);
+
+		if (call.callee() instanceof Expression.Get get) {
+			return invoke(get, arguments, parenthesis);
+		}
+
+		final var callee = compile(call.callee());
+
+		return (environment) -> {
+			final var calleeValue = callee.evaluate(environment);
+			final var values = evaluateArguments(arguments, environment);
+
+			return interpreter.call(calleeValue, values, parenthesis);
+		};
+	}
+
+	private CompiledExpression invoke(Expression.Get get, CompiledExpression[] arguments, Token parenthesis) {
+		final var object = compile(get.object());
+		final var name = get.name();
+		final var cache = get.cache();
+
+		return (environment) -> {
+			if (!(object.evaluate(environment) instanceof LoxInstance instance)) {
+				throw new RuntimeError("Only instances have properties.", name);
+			}
+
+			final var field = instance.field(name.lexeme(), cache);
+			if (field != null) {
+				return interpreter.call(field, evaluateArguments(arguments, environment), parenthesis);
+			}
+
+			final var method = (InterpretedMethod) instance.method(name);
+			final var values = evaluateArguments(arguments, environment);
+
+			checkArity(method, values.length, parenthesis);
+
+			return method.invoke(interpreter, instance, values);
+		};
+	}
+
+	private static LoxValue[] evaluateArguments(CompiledExpression[] arguments, Environment environment) {
+		final var values = new LoxValue[arguments.length];
+		for (var index = 0; index < arguments.length; index++) {
+			values[index] = arguments[index].evaluate(environment);
+		}
+
+		return values;
+	}
+
+	private static void checkArity(LoxCallable callable, int argumentCount, Token parenthesis) {
+		if (callable.arity() != argumentCount) {
+			throw new RuntimeError("Expected %d arguments but got %s.".formatted(callable.arity(), argumentCount), parenthesis);
+		}
+	}
+
+	@Override
+	public CompiledExpression visitGet(Expression.Get get) {
+		final var object = compile(get.object());
+		final var name = get.name();
+		final var cache = get.cache();
+
+		return (environment) -> {
+			if (object.evaluate(environment) instanceof LoxInstance instance) {
+				return instance.get(name, cache);
+			}
+
+			throw new RuntimeError("Only instances have properties.", name);
+		};
+	}
+
+	@Override
+	public CompiledExpression visitSet(Expression.Set set) {
+		final var object = compile(set.object());
+		final var name = set.name();
+		final var value = compile(set.value());
+		final var cache = set.cache();
+
+		return (environment) -> {
+			if (!(object.evaluate(environment) instanceof LoxInstance instance)) {
+				throw new RuntimeError("Only instances have fields.", name);
+			}
+
+			final var result = value.evaluate(environment);
+			instance.set(name, result, cache);
+
+			return result;
+		};
+	}
+
+	@Override
+	public CompiledExpression visitThis(Expression.This this_) {
+		return lookUpVariable(this_.keyword(), this_.binding());
+	}
+
+	private CompiledExpression lookUpVariable(Token name, Binding binding) {
+		final var slot = binding.slot();
+
+		return switch (binding.kind()) {
+			case GLOBAL -> (__) -> globals.get(name);
+			case LOCAL -> (environment) -> environment.local(slot);
+			case CELL -> (environment) -> environment.cell(slot).value();
+			case UPVALUE -> (environment) -> environment.upvalue(slot).value();
+		};
+	}
+
+	private static boolean isTruthy(LoxValue value) {
+		return switch (value) {
+			case LoxNil __ -> false;
+			case LoxBoolean boolean_ -> boolean_.value();
+			default -> true;
+		};
+	}
+
+	private static RuntimeError numbersExpected(Token operator) {
+		return new RuntimeError("Operands must be numbers.", operator);
+	}
+
+	private record NumberLiteral(
+		LoxNumber constant
+	) implements CompiledNumber {
+
+		@Override
+		public double evaluateDouble(Environment environment) {
+			return constant.value();
+		}
+
+		@Override
+		public LoxValue evaluate(Environment environment) {
+			return constant;
+		}
+
+	}
+
+}
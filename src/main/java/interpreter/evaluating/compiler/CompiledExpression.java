@@ -0,0 +1,27 @@
+package interpreter.evaluating.compiler;
+
+import interpreter.evaluating.Environment;
+import interpreter.evaluating.value.LoxNumber;
+import interpreter.evaluating.value.LoxValue;
+
+@FunctionalInterface
+public interface CompiledExpression {
+
+	LoxValue evaluate(Environment environment);
+
+	/**
+	 * Evaluate an operand expected to be a number, without boxing it when the expression computes it directly.
+	 *
+	 * @throws NotANumber with the value of the expression if it is not a number
+	 */
+	default double evaluateDouble(Environment environment) {
+		final var value = evaluate(environment);
+
+		if (value instanceof LoxNumber(final var number)) {
+			return number;
+		}
+
+		throw new NotANumber(value);
+	}
+
+}
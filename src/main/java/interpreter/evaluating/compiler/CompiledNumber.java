@@ -0,0 +1,21 @@
+package interpreter.evaluating.compiler;
+
+import interpreter.evaluating.Environment;
+import interpreter.evaluating.value.LoxNumber;
+import interpreter.evaluating.value.LoxValue;
+
+/**
+ * Expression that always computes a raw number, only boxed when a caller needs a {@link LoxValue}.
+ */
+@FunctionalInterface
+public interface CompiledNumber extends CompiledExpression {
+
+	@Override
+	double evaluateDouble(Environment environment);
+
+	@Override
+	default LoxValue evaluate(Environment environment) {
+		return LoxNumber.valueOf(evaluateDouble(environment));
+	}
+
+}
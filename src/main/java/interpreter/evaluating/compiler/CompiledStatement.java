@@ -0,0 +1,14 @@
+package interpreter.evaluating.compiler;
+
+import interpreter.evaluating.Environment;
+import interpreter.evaluating.value.LoxValue;
+
+@FunctionalInterface
+public interface CompiledStatement {
+
+	/**
+	 * @return the returned value if a <code>return</code> statement completed the execution, <code>null</code> otherwise
+	 */
+	LoxValue execute(Environment environment);
+
+}
@@ -0,0 +1,76 @@
+package interpreter.evaluating.compiler;
+
+import interpreter.evaluating.Environment;
+import interpreter.evaluating.value.LoxBoolean;
+import interpreter.evaluating.value.LoxNumber;
+import interpreter.evaluating.value.LoxValue;
+
+/**
+ * Equality specializing itself on numbers, compared without boxing, until it observes another operand.
+ */
+final class EqualityNode implements CompiledExpression {
+
+	private final CompiledExpression left;
+	private final CompiledExpression right;
+	private final boolean negated;
+	private Specialization specialization = Specialization.UNINITIALIZED;
+
+	public EqualityNode(CompiledExpression left, CompiledExpression right, boolean negated) {
+		this.left = left;
+		this.right = right;
+		this.negated = negated;
+	}
+
+	@Override
+	public LoxValue evaluate(Environment environment) {
+		return LoxBoolean.valueOf(test(environment) != negated);
+	}
+
+	private boolean test(Environment environment) {
+		return switch (specialization) {
+			case NUMBERS -> {
+				final double leftNumber;
+				try {
+					leftNumber = left.evaluateDouble(environment);
+				} catch (NotANumber notANumber) {
+					yield generalize(notANumber.value(), right.evaluate(environment));
+				}
+
+				try {
+					/* same as the equality of boxed numbers, NaN is equal to itself and -0 differs from 0 */
+					yield Double.compare(leftNumber, right.evaluateDouble(environment)) == 0;
+				} catch (NotANumber notANumber) {
+					yield generalize(LoxNumber.valueOf(leftNumber), notANumber.value());
+				}
+			}
+			case UNINITIALIZED -> {
+				final var leftValue = left.evaluate(environment);
+				final var rightValue = right.evaluate(environment);
+
+				if (leftValue instanceof LoxNumber && rightValue instanceof LoxNumber) {
+					specialization = Specialization.NUMBERS;
+				} else {
+					specialization = Specialization.GENERIC;
+				}
+
+				yield leftValue.equals(rightValue);
+			}
+			case GENERIC -> left.evaluate(environment).equals(right.evaluate(environment));
+		};
+	}
+
+	private boolean generalize(LoxValue leftValue, LoxValue rightValue) {
+		specialization = Specialization.GENERIC;
+
+		return leftValue.equals(rightValue);
+	}
+
+	private enum Specialization {
+
+		UNINITIALIZED,
+		NUMBERS,
+		GENERIC;
+
+	}
+
+}
@@ -0,0 +1,53 @@
+package interpreter.evaluating.compiler;
+
+import interpreter.evaluating.Interpreter;
+import interpreter.parser.Statement;
+
+/**
+ * Call counter of a function declaration, shared by every closure created from it.
+ * Once the declaration is hot, its body is compiled and subsequent calls skip the tree-walker.
+ * The compiled body is bound to the globals of an interpreter, so the profile starts over when another interpreter runs the declaration.
+ */
+public final class FunctionProfile {
+
+	public static final int COMPILE_THRESHOLD = Integer.getInteger("lox.compileThreshold", 100);
+
+	private Interpreter interpreter = null;
+	private int calls = 0;
+	private CompiledStatement body = null;
+
+	/**
+	 * Record a call, compiling the body if the threshold has just been reached.
+	 *
+	 * @return the compiled body, or <code>null</code> if the function must stay interpreted
+	 */
+	public CompiledStatement hit(Interpreter interpreter, Statement.Function declaration) {
+		own(interpreter);
+
+		if (body == null && calls <= COMPILE_THRESHOLD && calls++ == COMPILE_THRESHOLD) {
+			body = new ClosureCompiler(interpreter).compileBody(declaration);
+		}
+
+		return body;
+	}
+
+	/**
+	 * Use a body compiled ahead of time, so that not even the first calls are interpreted.
+	 */
+	public void precompiled(Interpreter interpreter, CompiledStatement body) {
+		own(interpreter);
+
+		if (this.body == null) {
+			this.body = body;
+		}
+	}
+
+	private void own(Interpreter interpreter) {
+		if (this.interpreter != interpreter) {
+			this.interpreter = interpreter;
+			this.calls = 0;
+			this.body = null;
+		}
+	}
+
+}
@@ -0,0 +1,23 @@
+package interpreter.evaluating.compiler;
+
+import interpreter.evaluating.value.LoxValue;
+
+/**
+ * Failed speculation that an operand is a number, carrying the operand so that it is not evaluated twice.
+ */
+@SuppressWarnings("serial")
+final class NotANumber extends RuntimeException {
+
+	private final LoxValue value;
+
+	public NotANumber(LoxValue value) {
+		super(null, null, false, false);
+
+		this.value = value;
+	}
+
+	public LoxValue value() {
+		return value;
+	}
+
+}
@@ -0,0 +1,12 @@
+package interpreter.evaluating.value;
+
+import interpreter.evaluating.Interpreter;
+
+/**
+ * Callable of the tree-walker and closure engines, which call it through the {@link Interpreter}.
+ */
+public interface InterpretedCallable extends LoxCallable {
+
+	LoxValue call(Interpreter interpreter, LoxValue[] arguments);
+
+}
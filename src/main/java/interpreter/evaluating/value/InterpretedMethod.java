@@ -0,0 +1,12 @@
+package interpreter.evaluating.value;
+
+import interpreter.evaluating.Interpreter;
+
+public interface InterpretedMethod extends LoxMethod, InterpretedCallable {
+
+	/**
+	 * Call the method on a receiver without binding it first.
+	 */
+	LoxValue invoke(Interpreter interpreter, LoxInstance receiver, LoxValue[] arguments);
+
+}
@@ -0,0 +1,46 @@
+package interpreter.evaluating.value;
+
+import interpreter.evaluating.Interpreter;
+
+/**
+ * Method read as a value, only materialized when it escapes a call site.
+ */
+public record LoxBoundMethod(
+	LoxInstance receiver,
+	LoxFunction method
+) implements InterpretedCallable {
+
+	@Override
+	public String name() {
+		return method.name();
+	}
+
+	@Override
+	public int arity() {
+		return method.arity();
+	}
+
+	@Override
+	public LoxValue call(Interpreter interpreter, LoxValue[] arguments) {
+		return method.invoke(interpreter, receiver, arguments);
+	}
+
+	/**
+	 * Every read of a method produces a distinct value, like a closure.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		return this == other;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+
+	@Override
+	public String format() {
+		return method.format();
+	}
+
+}
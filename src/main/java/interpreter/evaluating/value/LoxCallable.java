@@ -1,17 +1,14 @@
 package interpreter.evaluating.value;
 
-import java.util.List;
-
-import interpreter.evaluating.Interpreter;
-
+/**
+ * Value that can be called, shared by every engine: each engine calls the callables it creates itself.
+ */
 public non-sealed interface LoxCallable extends LoxValue {
 
 	String name();
 
 	int arity();
 
-	LoxValue call(Interpreter interpreter, List<LoxValue> arguments);
-
 	String format();
 
 }
\ No newline at end of file
@@ -1,15 +1,20 @@
 package interpreter.evaluating.value;
 
-import java.util.List;
 import java.util.Map;
 
-import interpreter.evaluating.Interpreter;
-
+/**
+ * @param shape the empty shape at the root of the shapes of its instances
+ */
 public record LoxClass(
 	String name,
-	Map<String, LoxFunction> methods
+	Map<String, LoxMethod> methods,
+	Shape shape
 ) implements LoxCallable {
 
+	public LoxClass(String name, Map<String, LoxMethod> methods) {
+		this(name, methods, Shape.root());
+	}
+
 	@Override
 	public int arity() {
 		final var initializer = findMethod("init");
@@ -20,24 +25,12 @@ public record LoxClass(
 		return 0;
 	}
 
-	@Override
-	public LoxValue call(Interpreter interpreter, List<LoxValue> arguments) {
-		final var instance = new LoxInstance(this);
-
-		final var initializer = findMethod("init");
-		if (initializer != null) {
-			initializer.bind(instance).call(interpreter, arguments);
-		}
-
-		return instance;
-	}
-
 	@Override
 	public String format() {
 		return name;
 	}
 
-	public LoxFunction findMethod(String name) {
+	public LoxMethod findMethod(String name) {
 		return methods.get(name);
 	}
 
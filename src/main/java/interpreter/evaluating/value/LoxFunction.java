@@ -2,17 +2,16 @@ package interpreter.evaluating.value;
 
 import java.util.List;
 
+import interpreter.evaluating.Cell;
 import interpreter.evaluating.Environment;
 import interpreter.evaluating.Interpreter;
-import interpreter.evaluating.Return;
 import interpreter.parser.Statement;
-import interpreter.util.Iterators;
 
 public record LoxFunction(
 	Statement.Function declaration,
-	Environment closure,
+	Cell[] upvalues,
 	boolean isInitializer
-) implements LoxCallable {
+) implements InterpretedMethod {
 
 	@Override
 	public String name() {
@@ -25,35 +24,73 @@ public record LoxFunction(
 	}
 
 	@Override
-	public LoxValue call(Interpreter interpreter, List<LoxValue> arguments) {
-		final var environment = closure.inner();
+	public LoxValue call(Interpreter interpreter, LoxValue[] arguments) {
+		final var body = declaration.body().statements();
+		final var frame = declaration.frame();
+		final var environment = new Environment(frame, upvalues);
 
-		Iterators.zip(
-			declaration.parameters().iterator(),
-			arguments.iterator(),
-			(parameter, argument) -> environment.define(parameter.lexeme(), argument)
-		);
+		final var parameters = frame.parameters();
+		for (var index = 0; index < arguments.length; index++) {
+			environment.define(parameters.get(index), arguments[index]);
+		}
+
+		return execute(interpreter, body, environment);
+	}
+
+	@Override
+	public LoxValue invoke(Interpreter interpreter, LoxInstance receiver, LoxValue[] arguments) {
+		final var body = declaration.body().statements();
+		final var frame = declaration.frame();
+		final var environment = new Environment(frame, upvalues);
 
-		LoxValue returnedValue = LoxNil.INSTANCE;
+		final var parameters = frame.parameters();
+		environment.define(parameters.get(0), receiver);
 
-		try {
-			interpreter.executeBlock(declaration.body(), environment);
-		} catch (Return return_) {
-			returnedValue = return_.value();
+		for (var index = 0; index < arguments.length; index++) {
+			environment.define(parameters.get(index + 1), arguments[index]);
 		}
 
+		final var returnedValue = execute(interpreter, body, environment);
+
 		if (isInitializer) {
-			return closure.getAt(0, "this");
+			return receiver;
 		}
 
 		return returnedValue;
 	}
 
-	public LoxFunction bind(LoxInstance instance) {
-		final var environment = closure.inner();
-		environment.define("this", instance);
+	/**
+	 * @param body the statements of the declaration, which must be parsed before the frame is laid out
+	 */
+	private LoxValue execute(Interpreter interpreter, List<Statement> body, Environment environment) {
+		final var compiled = declaration.profile().hit(interpreter, declaration);
+		final var result = compiled != null
+			? compiled.execute(environment)
+			: interpreter.executeBlock(body, environment);
+
+		if (result != null) {
+			return result;
+		}
 
-		return new LoxFunction(declaration, environment, isInitializer);
+		return LoxNil.INSTANCE;
+	}
+
+	@Override
+	public LoxBoundMethod bind(LoxInstance instance) {
+		return new LoxBoundMethod(instance, this);
+	}
+
+	/**
+	 * Every closure is a distinct value, even when created from the same declaration.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		return this == other;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
 	}
 
 	@Override
@@ -61,4 +98,4 @@ public record LoxFunction(
 		return "<fn %s>".formatted(name());
 	}
 
-}
\ No newline at end of file
+}
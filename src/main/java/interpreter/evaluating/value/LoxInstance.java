@@ -1,36 +1,75 @@
 package interpreter.evaluating.value;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import interpreter.evaluating.RuntimeError;
 import interpreter.grammar.Token;
 
 public final class LoxInstance implements LoxValue {
 
+	private static final LoxValue[] NO_FIELDS = {};
+
 	private final LoxClass klass;
-	private final Map<String, LoxValue> fields = new HashMap<>();
+	private Shape shape;
+	private LoxValue[] fields = NO_FIELDS;
 
 	public LoxInstance(LoxClass klass) {
 		this.klass = klass;
+		this.shape = klass.shape();
 	}
 
-	public LoxValue get(Token name) {
-		final var value = fields.get(name.lexeme());
+	public LoxValue get(Token name, PropertyCache cache) {
+		final var value = field(name.lexeme(), cache);
 		if (value != null) {
 			return value;
 		}
 
+		return method(name).bind(this);
+	}
+
+	public LoxMethod method(Token name) {
 		final var method = klass.findMethod(name.lexeme());
-		if (method != null) {
-			return method.bind(this);
+		if (method == null) {
+			throw new RuntimeError("Undefined property '%s'.".formatted(name.lexeme()), name);
+		}
+
+		return method;
+	}
+
+	public void set(Token name, LoxValue value, PropertyCache cache) {
+		set(name.lexeme(), value, cache);
+	}
+
+	public void set(String name, LoxValue value, PropertyCache cache) {
+		final var slot = cache.slotOf(shape, name);
+		if (slot != -1) {
+			fields[slot] = value;
+			return;
+		}
+
+		final var size = shape.size();
+		if (size == fields.length) {
+			fields = Arrays.copyOf(fields, Math.max(4, size * 2));
+		}
+
+		shape = cache.withField(shape, name);
+		fields[size] = value;
+	}
+
+	/**
+	 * @return the value of the field, or <code>null</code> if the instance has no such field
+	 */
+	public LoxValue field(String name, PropertyCache cache) {
+		final var slot = cache.slotOf(shape, name);
+		if (slot == -1) {
+			return null;
 		}
 
-		throw new RuntimeError("Undefined property '%s'.".formatted(name.lexeme()), name);
+		return fields[slot];
 	}
 
-	public void set(Token name, LoxValue value) {
-		fields.put(name.lexeme(), value);
+	public LoxClass klass() {
+		return klass;
 	}
 
 	@Override
@@ -38,4 +77,4 @@ public final class LoxInstance implements LoxValue {
 		return "%s instance".formatted(klass.name());
 	}
 
-}
\ No newline at end of file
+}
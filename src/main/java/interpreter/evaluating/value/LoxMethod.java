@@ -0,0 +1,7 @@
+package interpreter.evaluating.value;
+
+public interface LoxMethod extends LoxCallable {
+
+	LoxCallable bind(LoxInstance instance);
+
+}
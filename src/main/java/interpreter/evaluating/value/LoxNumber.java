@@ -4,6 +4,28 @@ public record LoxNumber(
 	double value
 ) implements LoxValue {
 
+	private static final int CACHE_LOW = -128;
+	private static final int CACHE_HIGH = 1023;
+	private static final LoxNumber[] CACHE = new LoxNumber[CACHE_HIGH - CACHE_LOW + 1];
+
+	static {
+		for (var index = 0; index < CACHE.length; index++) {
+			CACHE[index] = new LoxNumber(index + CACHE_LOW);
+		}
+	}
+
+	/**
+	 * Small integers are shared, like {@link Integer#valueOf(int)}; negative zero is not an integer here.
+	 */
+	public static LoxNumber valueOf(double value) {
+		final var intValue = (int) value;
+		if (intValue == value && intValue >= CACHE_LOW && intValue <= CACHE_HIGH && (intValue != 0 || Double.doubleToRawLongBits(value) == 0)) {
+			return CACHE[intValue - CACHE_LOW];
+		}
+
+		return new LoxNumber(value);
+	}
+
 	@Override
 	public String format() {
 		final var longValue = (long) value;
@@ -14,4 +36,4 @@ public record LoxNumber(
 		return Double.toString(value);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package interpreter.evaluating.value;
+
+/**
+ * Inline cache of a property access site, mapping the last few shapes seen to their field slot, and for an assignment adding the field, to the shape it leads to.
+ * A miss moves its shape to the front and drops the oldest one once {@link #CAPACITY} shapes were seen, so shapes of classes that are gone do not crowd the site.
+ */
+public final class PropertyCache {
+
+	private static final int CAPACITY = 4;
+
+	private final Shape[] shapes = new Shape[CAPACITY];
+	private final int[] slots = new int[CAPACITY];
+	private final Shape[] transitions = new Shape[CAPACITY];
+	private int size = 0;
+
+	/**
+	 * @return the slot of the field, or <code>-1</code> if the shape has no such field
+	 */
+	public int slotOf(Shape shape, String name) {
+		for (var index = 0; index < size; index++) {
+			if (shapes[index] == shape) {
+				return slots[index];
+			}
+		}
+
+		return miss(shape, name);
+	}
+
+	/**
+	 * @return the shape reached by appending the field, which the shape lacks
+	 */
+	public Shape withField(Shape shape, String name) {
+		for (var index = 0; index < size; index++) {
+			if (shapes[index] == shape) {
+				var transition = transitions[index];
+				if (transition == null) {
+					transition = shape.withField(name);
+					transitions[index] = transition;
+				}
+
+				return transition;
+			}
+		}
+
+		return shape.withField(name);
+	}
+
+	/**
+	 * Kept out of {@link #slotOf} so that the lookup of a hit stays small enough to be inlined at every site.
+	 */
+	private int miss(Shape shape, String name) {
+		final var slot = shape.slotOf(name);
+		final var kept = Math.min(size, CAPACITY - 1);
+
+		System.arraycopy(shapes, 0, shapes, 1, kept);
+		System.arraycopy(slots, 0, slots, 1, kept);
+		System.arraycopy(transitions, 0, transitions, 1, kept);
+
+		shapes[0] = shape;
+		slots[0] = slot;
+		transitions[0] = null;
+		size = kept + 1;
+
+		return slot;
+	}
+
+}
@@ -0,0 +1,63 @@
+package interpreter.evaluating.value;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hidden class of a {@link LoxInstance}: the field layout shared by every instance whose fields were added in the same order.
+ * Every class roots its own tree of shapes, freed along with the class.
+ * A shape only records the field it appends to its parent, and the shapes of a tree share one transition table.
+ */
+public final class Shape {
+
+	private final Shape parent;
+	private final String name;
+	private final int size;
+	private final Map<Transition, Shape> transitions;
+
+	private Shape(Shape parent, String name, int size, Map<Transition, Shape> transitions) {
+		this.parent = parent;
+		this.name = name;
+		this.size = size;
+		this.transitions = transitions;
+	}
+
+	/**
+	 * @return the empty shape at the root of a new tree
+	 */
+	public static Shape root() {
+		return new Shape(null, null, 0, new HashMap<>());
+	}
+
+	/**
+	 * Misses of the {@link PropertyCache} walk up to the root, as the fields of an instance are few.
+	 *
+	 * @return the slot of the field, or <code>-1</code> if the shape has no such field
+	 */
+	public int slotOf(String name) {
+		for (var shape = this; shape.parent != null; shape = shape.parent) {
+			if (shape.name.equals(name)) {
+				return shape.size - 1;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return the shape reached by appending the field, which is stored at slot {@link #size()}
+	 */
+	public Shape withField(String name) {
+		return transitions.computeIfAbsent(new Transition(this, name), (__) -> new Shape(this, name, size + 1, transitions));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private record Transition(
+		Shape parent,
+		String name
+	) {}
+
+}
@@ -0,0 +1,242 @@
+package interpreter.flat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import interpreter.evaluating.value.LoxValue;
+import interpreter.grammar.Literal;
+import interpreter.grammar.Token;
+import interpreter.grammar.TokenType;
+import interpreter.parser.Binding;
+import interpreter.parser.Frame;
+
+/**
+ * Syntax tree of a whole script stored as parallel primitive arrays indexed by node, children being added before their parent.
+ * Every node has a kind, a line, a binding kind and three <code>int</code> operands, whose meaning depends on the kind, see {@link NodeKind}.
+ * Child lists are stored in a shared array, each one prefixed by its size, names are interned and literal values pooled.
+ */
+public final class FlatAst {
+
+	public static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 256;
+	private static final NodeKind[] KINDS = NodeKind.values();
+	private static final Binding.Kind[] BINDINGS = Binding.Kind.values();
+
+	private byte[] kinds = new byte[INITIAL_CAPACITY];
+	private byte[] bindings = new byte[INITIAL_CAPACITY];
+	private int[] firsts = new int[INITIAL_CAPACITY];
+	private int[] seconds = new int[INITIAL_CAPACITY];
+	private int[] thirds = new int[INITIAL_CAPACITY];
+	private int[] lines = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	private int[] lists = new int[INITIAL_CAPACITY];
+	private int listsSize = 0;
+
+	private final List<String> names = new ArrayList<>();
+	private final Map<String, Integer> nameIndices = new HashMap<>();
+	private final List<LoxValue> constants = new ArrayList<>();
+	private final IntArray propertyNames = new IntArray();
+
+	private final IntArray functionParameters = new IntArray();
+	private final IntArray functionBodies = new IntArray();
+	private final List<Frame> frames = new ArrayList<>();
+
+	private int script = NONE;
+	private final Frame scriptFrame = new Frame();
+
+	int add(NodeKind kind, int first, int second, int third, int line) {
+		if (size == kinds.length) {
+			final var capacity = size * 2;
+
+			kinds = Arrays.copyOf(kinds, capacity);
+			bindings = Arrays.copyOf(bindings, capacity);
+			firsts = Arrays.copyOf(firsts, capacity);
+			seconds = Arrays.copyOf(seconds, capacity);
+			thirds = Arrays.copyOf(thirds, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+		}
+
+		kinds[size] = (byte) kind.ordinal();
+		firsts[size] = first;
+		seconds[size] = second;
+		thirds[size] = third;
+		lines[size] = line;
+
+		return size++;
+	}
+
+	/**
+	 * @return the offset of the copied list
+	 */
+	int list(IntArray elements) {
+		final var offset = listsSize;
+		final var required = offset + elements.size() + 1;
+
+		if (required > lists.length) {
+			lists = Arrays.copyOf(lists, Math.max(required, lists.length * 2));
+		}
+
+		lists[offset] = elements.size();
+		for (var index = 0; index < elements.size(); index++) {
+			lists[offset + index + 1] = elements.get(index);
+		}
+
+		listsSize = required;
+
+		return offset;
+	}
+
+	/**
+	 * @return the index of the interned name
+	 */
+	int name(String name) {
+		return nameIndices.computeIfAbsent(name, (__) -> {
+			names.add(name);
+			return names.size() - 1;
+		});
+	}
+
+	int constant(LoxValue value) {
+		constants.add(value);
+
+		return constants.size() - 1;
+	}
+
+	/**
+	 * @return the index of a new property access site, which gets its own inline cache
+	 */
+	int property(String name) {
+		propertyNames.add(name(name));
+
+		return propertyNames.size() - 1;
+	}
+
+	/**
+	 * @return the index of a new function, whose frame is laid out by the resolver
+	 */
+	int function(int parameters, int body) {
+		functionParameters.add(parameters);
+		functionBodies.add(body);
+		frames.add(new Frame());
+
+		return frames.size() - 1;
+	}
+
+	void script(int statements) {
+		script = statements;
+	}
+
+	void resolve(int node, Binding.Kind kind, int slot) {
+		bindings[node] = (byte) kind.ordinal();
+		thirds[node] = slot;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public NodeKind kind(int node) {
+		return KINDS[kinds[node]];
+	}
+
+	public int first(int node) {
+		return firsts[node];
+	}
+
+	public int second(int node) {
+		return seconds[node];
+	}
+
+	public int third(int node) {
+		return thirds[node];
+	}
+
+	public int line(int node) {
+		return lines[node];
+	}
+
+	public Binding.Kind binding(int node) {
+		return BINDINGS[bindings[node]];
+	}
+
+	/**
+	 * @return the slot of the node, as resolved
+	 */
+	public int slot(int node) {
+		return thirds[node];
+	}
+
+	public int listSize(int list) {
+		return lists[list];
+	}
+
+	public int listElement(int list, int index) {
+		return lists[list + index + 1];
+	}
+
+	public String name(int index) {
+		return names.get(index);
+	}
+
+	public LoxValue constant(int index) {
+		return constants.get(index);
+	}
+
+	public String propertyName(int property) {
+		return names.get(propertyNames.get(property));
+	}
+
+	public int propertyCount() {
+		return propertyNames.size();
+	}
+
+	/**
+	 * @return the list of the parameter nodes of the function
+	 */
+	public int parameters(int function) {
+		return functionParameters.get(function);
+	}
+
+	/**
+	 * @return the list of the statements of the body of the function
+	 */
+	public int body(int function) {
+		return functionBodies.get(function);
+	}
+
+	public Frame frame(int function) {
+		return frames.get(function);
+	}
+
+	/**
+	 * @return the list of the top-level statements
+	 */
+	public int script() {
+		return script;
+	}
+
+	public Frame scriptFrame() {
+		return scriptFrame;
+	}
+
+	/**
+	 * @return a token standing for the node in error messages, named after the node if it declares or refers to a name
+	 */
+	public Token token(int node) {
+		final var lexeme = switch (kind(node)) {
+			case VARIABLE_DECLARATION, FUNCTION, PARAMETER, CLASS, VARIABLE, ASSIGN -> name(first(node));
+			case GET, SET -> propertyName(third(node));
+			case RETURN -> "return";
+			case THIS -> "this";
+			default -> "";
+		};
+
+		return new Token(TokenType.IDENTIFIER, lexeme, new Literal.Nil(), line(node));
+	}
+
+}
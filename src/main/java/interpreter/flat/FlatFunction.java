@@ -0,0 +1,41 @@
+package interpreter.flat;
+
+import interpreter.evaluating.Cell;
+import interpreter.evaluating.value.LoxInstance;
+import interpreter.evaluating.value.LoxMethod;
+
+/**
+ * @param function the index of the function in its {@link FlatAst}
+ */
+public record FlatFunction(
+	String name,
+	int function,
+	int arity,
+	Cell[] upvalues,
+	boolean isInitializer
+) implements LoxMethod {
+
+	@Override
+	public FlatBoundMethod bind(LoxInstance instance) {
+		return new FlatBoundMethod(instance, this);
+	}
+
+	/**
+	 * Every closure is a distinct value, even when created from the same declaration.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		return this == other;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+
+	@Override
+	public String format() {
+		return "<fn %s>".formatted(name);
+	}
+
+}
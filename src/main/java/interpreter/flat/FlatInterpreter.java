@@ -0,0 +1,442 @@
+package interpreter.flat;
+
+import java.util.HashMap;
+
+import interpreter.Lox;
+import interpreter.evaluating.Cell;
+import interpreter.evaluating.Environment;
+import interpreter.evaluating.GlobalEnvironment;
+import interpreter.evaluating.Interpreter;
+import interpreter.evaluating.RuntimeError;
+import interpreter.evaluating.SimpleNativeFunction;
+import interpreter.evaluating.value.LoxBoolean;
+import interpreter.evaluating.value.LoxCallable;
+import interpreter.evaluating.value.LoxClass;
+import interpreter.evaluating.value.LoxInstance;
+import interpreter.evaluating.value.LoxMethod;
+import interpreter.evaluating.value.LoxNil;
+import interpreter.evaluating.value.LoxNumber;
+import interpreter.evaluating.value.LoxString;
+import interpreter.evaluating.value.LoxValue;
+import interpreter.evaluating.value.PropertyCache;
+import interpreter.parser.Binding;
+import lombok.NonNull;
+
+/**
+ * Tree-walking evaluator of a resolved {@link FlatAst}, with the same semantics as the {@link Interpreter}.
+ * Nodes are dispatched on their kind, operators included, and reached by index instead of through references.
+ */
+public class FlatInterpreter {
+
+	private final Lox lox;
+	private final FlatAst ast;
+	private final GlobalEnvironment globals = new GlobalEnvironment();
+	private final PropertyCache[] caches;
+	private Environment environment = null;
+
+	public FlatInterpreter(
+		@NonNull Lox lox,
+		@NonNull FlatAst ast
+	) {
+		this.lox = lox;
+		this.ast = ast;
+		this.caches = new PropertyCache[ast.propertyCount()];
+	}
+
+	public void interpret() {
+		try {
+			environment = new Environment(ast.scriptFrame(), new Cell[0]);
+			executeList(ast.script());
+		} catch (RuntimeError error) {
+			lox.reportRuntime(error.token().line(), error.getMessage());
+		}
+	}
+
+	/**
+	 * @return the value of the <code>return</code> statement that completed the list, or <code>null</code> if it completed normally
+	 */
+	private LoxValue executeList(int list) {
+		final var size = ast.listSize(list);
+
+		for (var index = 0; index < size; index++) {
+			final var returned = execute(ast.listElement(list, index));
+
+			if (returned != null) {
+				return returned;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the returned value if the statement completed with a <code>return</code>, or <code>null</code> otherwise
+	 */
+	private LoxValue execute(int node) {
+		return switch (ast.kind(node)) {
+			case EXPRESSION_STATEMENT -> {
+				evaluate(ast.first(node));
+				yield null;
+			}
+			case PRINT -> {
+				System.out.println(evaluate(ast.first(node)).format());
+				yield null;
+			}
+			case VARIABLE_DECLARATION -> {
+				final var initializer = ast.second(node);
+				define(node, initializer != FlatAst.NONE ? evaluate(initializer) : LoxNil.INSTANCE);
+				yield null;
+			}
+			case BLOCK -> executeList(ast.first(node));
+			case IF -> {
+				if (isTruthy(evaluate(ast.first(node)))) {
+					yield execute(ast.second(node));
+				}
+
+				final var elseBranch = ast.third(node);
+				yield elseBranch != FlatAst.NONE ? execute(elseBranch) : null;
+			}
+			case WHILE -> {
+				while (isTruthy(evaluate(ast.first(node)))) {
+					final var returned = execute(ast.second(node));
+
+					if (returned != null) {
+						yield returned;
+					}
+				}
+
+				yield null;
+			}
+			case FUNCTION -> {
+				declare(node);
+				initialize(node, function(node, false));
+				yield null;
+			}
+			case RETURN -> {
+				final var value = ast.first(node);
+				yield value != FlatAst.NONE ? evaluate(value) : LoxNil.INSTANCE;
+			}
+			case CLASS -> {
+				declare(node);
+
+				final var methods = new HashMap<String, LoxMethod>();
+				final var list = ast.second(node);
+				for (var index = 0; index < ast.listSize(list); index++) {
+					final var method = ast.listElement(list, index);
+					final var name = ast.name(ast.first(method));
+
+					methods.put(name, function(method, "init".equals(name)));
+				}
+
+				initialize(node, new LoxClass(ast.name(ast.first(node)), methods));
+				yield null;
+			}
+			default -> throw new IllegalStateException("not a statement: " + ast.kind(node));
+		};
+	}
+
+	private FlatFunction function(int node, boolean isInitializer) {
+		final var function = ast.second(node);
+		final var arity = ast.listSize(ast.parameters(function));
+
+		return new FlatFunction(ast.name(ast.first(node)), function, arity, environment.capture(ast.frame(function)), isInitializer);
+	}
+
+	private LoxValue evaluate(int node) {
+		return switch (ast.kind(node)) {
+			case LITERAL -> ast.constant(ast.first(node));
+			case NEGATE -> {
+				if (evaluate(ast.first(node)) instanceof LoxNumber(final var value)) {
+					yield LoxNumber.valueOf(-value);
+				}
+
+				throw new RuntimeError("Operand must be a number.", ast.token(node));
+			}
+			case NOT -> LoxBoolean.valueOf(!isTruthy(evaluate(ast.first(node))));
+			case ADD -> {
+				final var left = evaluate(ast.first(node));
+				final var right = evaluate(ast.second(node));
+
+				if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+					yield LoxNumber.valueOf(leftValue + rightValue);
+				}
+
+				if (left instanceof LoxString(final var leftValue) && right instanceof LoxString(final var rightValue)) {
+					yield new LoxString(leftValue + rightValue);
+				}
+
+				throw new RuntimeError("Operands must be two numbers or two strings.", ast.token(node));
+			}
+			case SUBTRACT, MULTIPLY, DIVIDE, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> {
+				final var left = evaluate(ast.first(node));
+				final var right = evaluate(ast.second(node));
+
+				if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+					yield applyNumberOperator(ast.kind(node), leftValue, rightValue);
+				}
+
+				throw new RuntimeError("Operands must be numbers.", ast.token(node));
+			}
+			case EQUAL -> LoxBoolean.valueOf(evaluate(ast.first(node)).equals(evaluate(ast.second(node))));
+			case NOT_EQUAL -> LoxBoolean.valueOf(!evaluate(ast.first(node)).equals(evaluate(ast.second(node))));
+			case AND -> {
+				final var left = evaluate(ast.first(node));
+				yield isTruthy(left) ? evaluate(ast.second(node)) : left;
+			}
+			case OR -> {
+				final var left = evaluate(ast.first(node));
+				yield isTruthy(left) ? left : evaluate(ast.second(node));
+			}
+			case VARIABLE, THIS -> get(node);
+			case ASSIGN -> {
+				final var value = evaluate(ast.second(node));
+				assign(node, value);
+				yield value;
+			}
+			case CALL -> call(node);
+			case GET -> {
+				if (!(evaluate(ast.first(node)) instanceof LoxInstance instance)) {
+					throw new RuntimeError("Only instances have properties.", ast.token(node));
+				}
+
+				final var property = ast.third(node);
+
+				final var field = instance.field(ast.propertyName(property), cache(property));
+				if (field != null) {
+					yield field;
+				}
+
+				yield method(instance, node).bind(instance);
+			}
+			case SET -> {
+				if (!(evaluate(ast.first(node)) instanceof LoxInstance instance)) {
+					throw new RuntimeError("Only instances have fields.", ast.token(node));
+				}
+
+				final var property = ast.third(node);
+				final var value = evaluate(ast.second(node));
+				instance.set(ast.propertyName(property), value, cache(property));
+
+				yield value;
+			}
+			default -> throw new IllegalStateException("not an expression: " + ast.kind(node));
+		};
+	}
+
+	private LoxValue call(int node) {
+		final var callee = ast.first(node);
+		if (NodeKind.GET.equals(ast.kind(callee))) {
+			return invoke(callee, node);
+		}
+
+		final var value = evaluate(callee);
+		final var arguments = evaluateArguments(node);
+
+		return call(value, arguments, node);
+	}
+
+	private LoxValue call(LoxValue callee, LoxValue[] arguments, int node) {
+		return switch (callee) {
+			case FlatFunction function -> {
+				checkArity(function, arguments.length, node);
+				yield call(function, null, arguments);
+			}
+			case FlatBoundMethod bound -> {
+				checkArity(bound, arguments.length, node);
+				yield call(bound.method(), bound.receiver(), arguments);
+			}
+			case LoxClass klass -> {
+				checkArity(klass, arguments.length, node);
+
+				final var instance = new LoxInstance(klass);
+				if (klass.findMethod("init") instanceof FlatFunction initializer) {
+					call(initializer, instance, arguments);
+				}
+
+				yield instance;
+			}
+			case SimpleNativeFunction function -> {
+				checkArity(function, arguments.length, node);
+				yield function.call(arguments);
+			}
+			default -> throw new RuntimeError("Can only call functions and classes.", ast.token(node));
+		};
+	}
+
+	/**
+	 * Call a method directly on its receiver, without materializing a bound method.
+	 */
+	private LoxValue invoke(int get, int node) {
+		if (!(evaluate(ast.first(get)) instanceof LoxInstance instance)) {
+			throw new RuntimeError("Only instances have properties.", ast.token(get));
+		}
+
+		final var property = ast.third(get);
+
+		final var field = instance.field(ast.propertyName(property), cache(property));
+		if (field != null) {
+			return call(field, evaluateArguments(node), node);
+		}
+
+		final var method = (FlatFunction) method(instance, get);
+		final var arguments = evaluateArguments(node);
+
+		checkArity(method, arguments.length, node);
+
+		return call(method, instance, arguments);
+	}
+
+	/**
+	 * @param receiver the instance the method is called on, or <code>null</code> for a function
+	 */
+	private LoxValue call(FlatFunction function, LoxInstance receiver, LoxValue[] arguments) {
+		final var frame = ast.frame(function.function());
+		final var callee = new Environment(frame, function.upvalues());
+
+		final var parameters = frame.parameters();
+		final var offset = receiver != null ? 1 : 0;
+
+		if (receiver != null) {
+			callee.define(parameters.get(0), receiver);
+		}
+
+		for (var index = 0; index < arguments.length; index++) {
+			callee.define(parameters.get(index + offset), arguments[index]);
+		}
+
+		final var previous = environment;
+		LoxValue returned;
+
+		try {
+			environment = callee;
+			returned = executeList(ast.body(function.function()));
+		} finally {
+			environment = previous;
+		}
+
+		if (function.isInitializer()) {
+			return receiver;
+		}
+
+		return returned != null ? returned : LoxNil.INSTANCE;
+	}
+
+	private LoxValue[] evaluateArguments(int node) {
+		final var list = ast.second(node);
+		final var arguments = new LoxValue[ast.listSize(list)];
+
+		for (var index = 0; index < arguments.length; index++) {
+			arguments[index] = evaluate(ast.listElement(list, index));
+		}
+
+		return arguments;
+	}
+
+	private void checkArity(LoxCallable callable, int argumentCount, int node) {
+		if (callable.arity() != argumentCount) {
+			throw new RuntimeError("Expected %d arguments but got %s.".formatted(callable.arity(), argumentCount), ast.token(node));
+		}
+	}
+
+	private LoxMethod method(LoxInstance instance, int get) {
+		final var name = ast.propertyName(ast.third(get));
+
+		final var method = instance.klass().findMethod(name);
+		if (method == null) {
+			throw new RuntimeError("Undefined property '%s'.".formatted(name), ast.token(get));
+		}
+
+		return method;
+	}
+
+	private PropertyCache cache(int property) {
+		var cache = caches[property];
+		if (cache == null) {
+			cache = new PropertyCache();
+			caches[property] = cache;
+		}
+
+		return cache;
+	}
+
+	private LoxValue get(int node) {
+		return switch (ast.binding(node)) {
+			case GLOBAL -> {
+				final var name = ast.name(ast.first(node));
+
+				final var value = globals.find(name);
+				if (value == null) {
+					throw new RuntimeError("Undefined variable '%s'.".formatted(name), ast.token(node));
+				}
+
+				yield value;
+			}
+			case LOCAL -> environment.local(ast.slot(node));
+			case CELL -> environment.cell(ast.slot(node)).value();
+			case UPVALUE -> environment.upvalue(ast.slot(node)).value();
+		};
+	}
+
+	private void assign(int node, LoxValue value) {
+		switch (ast.binding(node)) {
+			case GLOBAL -> {
+				final var name = ast.name(ast.first(node));
+
+				if (!globals.replace(name, value)) {
+					throw new RuntimeError("Undefined variable '%s'.".formatted(name), ast.token(node));
+				}
+			}
+			case LOCAL -> environment.local(ast.slot(node), value);
+			case CELL -> environment.cell(ast.slot(node)).value(value);
+			case UPVALUE -> environment.upvalue(ast.slot(node)).value(value);
+		}
+	}
+
+	private void define(int node, LoxValue value) {
+		switch (ast.binding(node)) {
+			case GLOBAL -> globals.define(ast.name(ast.first(node)), value);
+			case LOCAL -> environment.local(ast.slot(node), value);
+			case CELL -> environment.cell(ast.slot(node), new Cell(value));
+			case UPVALUE -> throw new IllegalStateException("not a local");
+		}
+	}
+
+	/**
+	 * Declare a function or class before creating it, so that its closures can capture it.
+	 */
+	private void declare(int node) {
+		if (!Binding.Kind.GLOBAL.equals(ast.binding(node))) {
+			define(node, LoxNil.INSTANCE);
+		}
+	}
+
+	private void initialize(int node, LoxValue value) {
+		if (Binding.Kind.GLOBAL.equals(ast.binding(node))) {
+			globals.define(ast.name(ast.first(node)), value);
+		} else {
+			assign(node, value);
+		}
+	}
+
+	private static boolean isTruthy(LoxValue value) {
+		return switch (value) {
+			case LoxNil __ -> false;
+			case LoxBoolean boolean_ -> boolean_.value();
+			default -> true;
+		};
+	}
+
+	private static LoxValue applyNumberOperator(NodeKind operator, double left, double right) {
+		return switch (operator) {
+			case SUBTRACT -> LoxNumber.valueOf(left - right);
+			case DIVIDE -> LoxNumber.valueOf(left / right);
+			case MULTIPLY -> LoxNumber.valueOf(left * right);
+			case GREATER -> LoxBoolean.valueOf(left > right);
+			case GREATER_EQUAL -> LoxBoolean.valueOf(left >= right);
+			case LESS -> LoxBoolean.valueOf(left < right);
+			case LESS_EQUAL -> LoxBoolean.valueOf(left <= right);
+			default -> throw new UnsupportedOperationException();
+		};
+	}
+
+}
@@ -0,0 +1,381 @@
+package interpreter.flat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.function.Consumer;
+
+import interpreter.Lox;
+import interpreter.evaluating.Resolver;
+import interpreter.evaluating.Resolver.ClassType;
+import interpreter.evaluating.Resolver.FunctionType;
+import interpreter.parser.Binding;
+import interpreter.parser.Frame;
+import lombok.NonNull;
+
+/**
+ * Counterpart of the {@link Resolver} for a {@link FlatAst}, reporting the same errors in the same order.
+ * The bindings of the nodes are written back into the tree, the frames of the functions keep their {@link Binding} objects.
+ */
+public class FlatResolver {
+
+	private final Lox lox;
+	private final FlatAst ast;
+
+	private @NonNull FunctionType currentFunctionType = FunctionType.NONE;
+	private @NonNull ClassType currentClassType = ClassType.NONE;
+
+	private FunctionScope currentFunction = null;
+
+	public FlatResolver(
+		@NonNull Lox lox,
+		@NonNull FlatAst ast
+	) {
+		this.lox = lox;
+		this.ast = ast;
+	}
+
+	public void resolveScript() {
+		currentFunction = new FunctionScope(null);
+		resolveList(ast.script());
+		endFunction(ast.scriptFrame());
+	}
+
+	private void resolveList(int list) {
+		for (var index = 0; index < ast.listSize(list); index++) {
+			resolve(ast.listElement(list, index));
+		}
+	}
+
+	private void resolve(int node) {
+		switch (ast.kind(node)) {
+			case EXPRESSION_STATEMENT, PRINT, NEGATE, NOT, GET -> resolve(ast.first(node));
+			case VARIABLE_DECLARATION -> {
+				declare(node);
+
+				if (ast.second(node) != FlatAst.NONE) {
+					resolve(ast.second(node));
+				}
+
+				define(node);
+			}
+			case BLOCK -> {
+				beginScope();
+				resolveList(ast.first(node));
+				endScope();
+			}
+			case IF -> {
+				resolve(ast.first(node));
+				resolve(ast.second(node));
+
+				if (ast.third(node) != FlatAst.NONE) {
+					resolve(ast.third(node));
+				}
+			}
+			case WHILE, ADD, SUBTRACT, MULTIPLY, DIVIDE, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL, EQUAL, NOT_EQUAL, AND, OR -> {
+				resolve(ast.first(node));
+				resolve(ast.second(node));
+			}
+			case FUNCTION -> {
+				declare(node);
+				define(node);
+
+				resolveFunction(node, FunctionType.FUNCTION);
+			}
+			case RETURN -> resolveReturn(node);
+			case CLASS -> resolveClass(node);
+			case LITERAL -> {}
+			case VARIABLE -> {
+				final var name = ast.name(ast.first(node));
+
+				if (!currentFunction.scopes.isEmpty() && currentFunction.scopes.peek().isDeclaredButNotDefined(name)) {
+					lox.error(ast.token(node), "Can't read local variable in its own initializer.");
+				}
+
+				resolveLocal(node, name);
+			}
+			case ASSIGN -> {
+				resolve(ast.second(node));
+				resolveLocal(node, ast.name(ast.first(node)));
+			}
+			case CALL -> {
+				resolve(ast.first(node));
+				resolveList(ast.second(node));
+			}
+			case SET -> {
+				resolve(ast.second(node));
+				resolve(ast.first(node));
+			}
+			case THIS -> {
+				if (ClassType.NONE.equals(currentClassType)) {
+					lox.error(ast.token(node), "Can't use 'this' outside of a class.");
+				}
+
+				resolveLocal(node, "this");
+			}
+			case PARAMETER -> throw new IllegalStateException("parameter outside of a function");
+		}
+	}
+
+	private void beginScope() {
+		currentFunction.scopes.push(new Scope());
+	}
+
+	private void endScope() {
+		currentFunction.scopes.pop();
+	}
+
+	private boolean isGlobalScope() {
+		return currentFunction.enclosing == null && currentFunction.scopes.isEmpty();
+	}
+
+	/**
+	 * Declare the name of a node, whose binding is resolved once the function ends.
+	 */
+	private void declare(int node) {
+		if (isGlobalScope()) {
+			return;
+		}
+
+		final var name = ast.name(ast.first(node));
+
+		final var scope = currentFunction.scopes.peek();
+		if (scope.locals.containsKey(name)) {
+			lox.error(ast.token(node), "Already a variable with this name in this scope.");
+		}
+
+		declare(name).nodes.add(node);
+	}
+
+	private Local declare(String name) {
+		final var local = new Local();
+
+		currentFunction.scopes.peek().locals.put(name, local);
+		currentFunction.locals.add(local);
+
+		return local;
+	}
+
+	private void define(int node) {
+		if (isGlobalScope()) {
+			return;
+		}
+
+		currentFunction.scopes.peek().locals.get(ast.name(ast.first(node))).defined = true;
+	}
+
+	private void resolveLocal(int node, String name) {
+		final var local = currentFunction.find(name);
+		if (local != null) {
+			local.nodes.add(node);
+			return;
+		}
+
+		final var upvalue = resolveUpvalue(currentFunction, name);
+		if (upvalue != -1) {
+			ast.resolve(node, Binding.Kind.UPVALUE, upvalue);
+		}
+	}
+
+	/**
+	 * Capture a variable of an enclosing function, through the closures of every function in between.
+	 *
+	 * @return the index of the captured variable in the closure, or <code>-1</code> if the variable is global
+	 */
+	private int resolveUpvalue(FunctionScope function, String name) {
+		final var enclosing = function.enclosing;
+		if (enclosing == null) {
+			return -1;
+		}
+
+		final var local = enclosing.find(name);
+		if (local != null) {
+			local.captured = true;
+
+			return function.capture(local, local.bindings::add);
+		}
+
+		final var index = resolveUpvalue(enclosing, name);
+		if (index == -1) {
+			return -1;
+		}
+
+		return function.capture(enclosing.capturedLocals.get(index), (capture) -> capture.resolve(Binding.Kind.UPVALUE, index));
+	}
+
+	private void resolveFunction(int node, FunctionType type) {
+		final var function = ast.second(node);
+
+		final var enclosingType = currentFunctionType;
+		currentFunctionType = type;
+
+		currentFunction = new FunctionScope(currentFunction);
+		beginScope();
+
+		if (FunctionType.METHOD.equals(type) || FunctionType.INITIALIZER.equals(type)) {
+			/* the receiver is passed as the first parameter of the method */
+			final var receiver = new Binding();
+
+			final var local = declare("this");
+			local.defined = true;
+			local.bindings.add(receiver);
+
+			currentFunction.parameters.add(receiver);
+		}
+
+		final var parameters = ast.parameters(function);
+		for (var index = 0; index < ast.listSize(parameters); index++) {
+			final var parameter = ast.listElement(parameters, index);
+			final var name = ast.name(ast.first(parameter));
+
+			if (currentFunction.scopes.peek().locals.containsKey(name)) {
+				lox.error(ast.token(parameter), "Already a variable with this name in this scope.");
+			}
+
+			final var binding = new Binding();
+
+			final var local = declare(name);
+			local.defined = true;
+			local.bindings.add(binding);
+
+			currentFunction.parameters.add(binding);
+		}
+
+		resolveList(ast.body(function));
+
+		endScope();
+		endFunction(ast.frame(function));
+		currentFunction = currentFunction.enclosing;
+
+		currentFunctionType = enclosingType;
+	}
+
+	/**
+	 * Lay out the frame of the function once all of its locals are known to be captured or not.
+	 */
+	private void endFunction(Frame frame) {
+		var localCount = 0;
+		var cellCount = 0;
+
+		for (final var local : currentFunction.locals) {
+			final var kind = local.captured ? Binding.Kind.CELL : Binding.Kind.LOCAL;
+			final var slot = local.captured ? cellCount++ : localCount++;
+
+			for (var index = 0; index < local.nodes.size(); index++) {
+				ast.resolve(local.nodes.get(index), kind, slot);
+			}
+
+			local.bindings.forEach((binding) -> binding.resolve(kind, slot));
+		}
+
+		frame.resolve(List.copyOf(currentFunction.parameters), List.copyOf(currentFunction.captures), localCount, cellCount);
+	}
+
+	private void resolveReturn(int node) {
+		if (FunctionType.NONE.equals(currentFunctionType)) {
+			lox.error(ast.token(node), "Can't return from top-level code.");
+		}
+
+		if (ast.first(node) != FlatAst.NONE) {
+			if (FunctionType.INITIALIZER.equals(currentFunctionType)) {
+				lox.error(ast.token(node), "Can't return a value from an initializer.");
+			}
+
+			resolve(ast.first(node));
+		}
+	}
+
+	private void resolveClass(int node) {
+		final var enclosingType = currentClassType;
+		currentClassType = ClassType.CLASS;
+
+		declare(node);
+		define(node);
+
+		final var methods = ast.second(node);
+		for (var index = 0; index < ast.listSize(methods); index++) {
+			final var method = ast.listElement(methods, index);
+
+			var declaration = FunctionType.METHOD;
+			if (ast.name(ast.first(method)).equals("init")) {
+				declaration = FunctionType.INITIALIZER;
+			}
+
+			resolveFunction(method, declaration);
+		}
+
+		currentClassType = enclosingType;
+	}
+
+	private static class FunctionScope {
+
+		private final FunctionScope enclosing;
+		private final Stack<Scope> scopes = new Stack<>();
+		private final List<Local> locals = new ArrayList<>();
+		private final List<Binding> parameters = new ArrayList<>();
+		private final List<Binding> captures = new ArrayList<>();
+		private final List<Local> capturedLocals = new ArrayList<>();
+
+		public FunctionScope(FunctionScope enclosing) {
+			this.enclosing = enclosing;
+		}
+
+		public Local find(String name) {
+			for (var index = scopes.size() - 1; index >= 0; index--) {
+				final var local = scopes.get(index).locals.get(name);
+
+				if (local != null) {
+					return local;
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 * @return the index of the captured variable in the closure, shared by every reference to it
+		 */
+		public int capture(Local local, Consumer<Binding> resolution) {
+			final var existing = capturedLocals.indexOf(local);
+			if (existing != -1) {
+				return existing;
+			}
+
+			final var capture = new Binding();
+			resolution.accept(capture);
+
+			captures.add(capture);
+			capturedLocals.add(local);
+
+			return captures.size() - 1;
+		}
+
+	}
+
+	private static class Scope {
+
+		private final Map<String, Local> locals = new HashMap<>();
+
+		public boolean isDeclaredButNotDefined(String name) {
+			final var local = locals.get(name);
+
+			return local != null && !local.defined;
+		}
+
+	}
+
+	/**
+	 * Local variable with the nodes referring to it, and the bindings of the frames passing or capturing it.
+	 */
+	private static class Local {
+
+		private final IntArray nodes = new IntArray();
+		private final List<Binding> bindings = new ArrayList<>();
+		private boolean defined = false;
+		private boolean captured = false;
+
+	}
+
+}
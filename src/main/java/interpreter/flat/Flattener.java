@@ -0,0 +1,221 @@
+package interpreter.flat;
+
+import java.util.List;
+
+import interpreter.grammar.Token;
+import interpreter.parser.Expression;
+import interpreter.parser.Statement;
+
+/**
+ * Lowers the declarations produced by the {@link interpreter.parser.Parser Parser} into a {@link FlatAst}, one top-level declaration at a time.
+ * Groupings are dropped and operators become node kinds, the nodes only keeping the lines of their tokens.
+ */
+public class Flattener implements Statement.Visitor<Integer>, Expression.Visitor<Integer> {
+
+	private final FlatAst ast = new FlatAst();
+	private final IntArray script = new IntArray();
+
+	public void add(Statement declaration) {
+		script.add(visit(declaration));
+	}
+
+	/**
+	 * @return the tree of the script made of every declaration added
+	 */
+	public FlatAst finish() {
+		ast.script(ast.list(script));
+
+		return ast;
+	}
+
+	private int statements(List<Statement> statements) {
+		final var nodes = new IntArray();
+		for (final var statement : statements) {
+			nodes.add(visit(statement));
+		}
+
+		return ast.list(nodes);
+	}
+
+	private int name(Token name) {
+		return ast.name(name.lexeme());
+	}
+
+	private int function(Statement.Function function) {
+		final var parameters = new IntArray();
+		for (final var parameter : function.parameters()) {
+			parameters.add(ast.add(NodeKind.PARAMETER, name(parameter), FlatAst.NONE, 0, parameter.line()));
+		}
+
+		final var index = ast.function(ast.list(parameters), statements(function.body().statements()));
+
+		return ast.add(NodeKind.FUNCTION, name(function.name()), index, 0, function.name().line());
+	}
+
+	@Override
+	public Integer visitExpression(Statement.Expression expression) {
+		return ast.add(NodeKind.EXPRESSION_STATEMENT, visit(expression.expression()), FlatAst.NONE, FlatAst.NONE, 0);
+	}
+
+	@Override
+	public Integer visitPrint(Statement.Print print) {
+		return ast.add(NodeKind.PRINT, visit(print.expression()), FlatAst.NONE, FlatAst.NONE, 0);
+	}
+
+	@Override
+	public Integer visitVariable(Statement.Variable variable) {
+		final var initializer = variable.initializer()
+			.map(this::visit)
+			.orElse(FlatAst.NONE);
+
+		return ast.add(NodeKind.VARIABLE_DECLARATION, name(variable.name()), initializer, 0, variable.name().line());
+	}
+
+	@Override
+	public Integer visitBlock(Statement.Block block) {
+		return ast.add(NodeKind.BLOCK, statements(block.statements()), FlatAst.NONE, FlatAst.NONE, 0);
+	}
+
+	@Override
+	public Integer visitIf(Statement.If if_) {
+		final var condition = visit(if_.condition());
+		final var thenBranch = visit(if_.thenBranch());
+		final var elseBranch = if_.elseBranch()
+			.map(this::visit)
+			.orElse(FlatAst.NONE);
+
+		return ast.add(NodeKind.IF, condition, thenBranch, elseBranch, 0);
+	}
+
+	@Override
+	public Integer visitWhile(Statement.While while_) {
+		final var condition = visit(while_.condition());
+		final var body = visit(while_.body());
+
+		return ast.add(NodeKind.WHILE, condition, body, FlatAst.NONE, 0);
+	}
+
+	@Override
+	public Integer visitFunction(Statement.Function function) {
+		return function(function);
+	}
+
+	@Override
+	public Integer visitReturn(Statement.Return return_) {
+		final var value = return_.value()
+			.map(this::visit)
+			.orElse(FlatAst.NONE);
+
+		return ast.add(NodeKind.RETURN, value, FlatAst.NONE, FlatAst.NONE, return_.keyword().line());
+	}
+
+	@Override
+	public Integer visitClass(Statement.Class class_) {
+		final var methods = new IntArray();
+		for (final var method : class_.methods()) {
+			methods.add(function(method));
+		}
+
+		return ast.add(NodeKind.CLASS, name(class_.name()), ast.list(methods), 0, class_.name().line());
+	}
+
+	@Override
+	public Integer visitLiteral(Expression.Literal literal) {
+		return ast.add(NodeKind.LITERAL, ast.constant(literal.constant()), FlatAst.NONE, FlatAst.NONE, 0);
+	}
+
+	@Override
+	public Integer visitGrouping(Expression.Grouping grouping) {
+		return visit(grouping.expression());
+	}
+
+	@Override
+	public Integer visitUnary(Expression.Unary unary) {
+		final var kind = switch (unary.operator().type()) {
+			case MINUS -> NodeKind.NEGATE;
+			case BANG -> NodeKind.NOT;
+			default -> throw new UnsupportedOperationException();
+		};
+
+		return ast.add(kind, visit(unary.right()), FlatAst.NONE, FlatAst.NONE, unary.operator().line());
+	}
+
+	@Override
+	public Integer visitBinary(Expression.Binary binary) {
+		final var kind = switch (binary.operator().type()) {
+			case PLUS -> NodeKind.ADD;
+			case MINUS -> NodeKind.SUBTRACT;
+			case STAR -> NodeKind.MULTIPLY;
+			case SLASH -> NodeKind.DIVIDE;
+			case GREATER -> NodeKind.GREATER;
+			case GREATER_EQUAL -> NodeKind.GREATER_EQUAL;
+			case LESS -> NodeKind.LESS;
+			case LESS_EQUAL -> NodeKind.LESS_EQUAL;
+			case EQUAL_EQUAL -> NodeKind.EQUAL;
+			case BANG_EQUAL -> NodeKind.NOT_EQUAL;
+			default -> throw new UnsupportedOperationException();
+		};
+
+		final var left = visit(binary.left());
+		final var right = visit(binary.right());
+
+		return ast.add(kind, left, right, FlatAst.NONE, binary.operator().line());
+	}
+
+	@Override
+	public Integer visitVariable(Expression.Variable variable) {
+		return ast.add(NodeKind.VARIABLE, name(variable.name()), FlatAst.NONE, 0, variable.name().line());
+	}
+
+	@Override
+	public Integer visitAssign(Expression.Assign assign) {
+		return ast.add(NodeKind.ASSIGN, name(assign.name()), visit(assign.value()), 0, assign.name().line());
+	}
+
+	@Override
+	public Integer visitLogical(Expression.Logical logical) {
+		final var kind = switch (logical.operator().type()) {
+			case AND -> NodeKind.AND;
+			case OR -> NodeKind.OR;
+			default -> throw new UnsupportedOperationException();
+		};
+
+		final var left = visit(logical.left());
+		final var right = visit(logical.right());
+
+		return ast.add(kind, left, right, FlatAst.NONE, logical.operator().line());
+	}
+
+	@Override
+	public Integer visitCall(Expression.Call call) {
+		final var callee = visit(call.callee());
+
+		final var arguments = new IntArray();
+		for (final var argument : call.arguments()) {
+			arguments.add(visit(argument));
+		}
+
+		return ast.add(NodeKind.CALL, callee, ast.list(arguments), FlatAst.NONE, call.parenthesis().line());
+	}
+
+	@Override
+	public Integer visitGet(Expression.Get get) {
+		final var object = visit(get.object());
+
+		return ast.add(NodeKind.GET, object, FlatAst.NONE, ast.property(get.name().lexeme()), get.name().line());
+	}
+
+	@Override
+	public Integer visitSet(Expression.Set set) {
+		final var object = visit(set.object());
+		final var value = visit(set.value());
+
+		return ast.add(NodeKind.SET, object, value, ast.property(set.name().lexeme()), set.name().line());
+	}
+
+	@Override
+	public Integer visitThis(Expression.This this_) {
+		return ast.add(NodeKind.THIS, FlatAst.NONE, FlatAst.NONE, 0, this_.keyword().line());
+	}
+
+}
@@ -0,0 +1,30 @@
+package interpreter.flat;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of <code>int</code>, collecting node indices without boxing them.
+ */
+final class IntArray {
+
+	private int[] values = new int[8];
+	private int size = 0;
+
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+
+		values[size] = value;
+		++size;
+	}
+
+	public int get(int index) {
+		return values[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,103 @@
+package interpreter.flat;
+
+/**
+ * Kinds of the nodes of a {@link FlatAst}, documented with the meaning of their three operands.
+ * Lists are offsets in the list array of the tree, names indices of interned names, and absent nodes {@link FlatAst#NONE}.
+ * The slot of a node with a binding is filled in by the {@link FlatResolver}, along with its binding kind.
+ */
+public enum NodeKind {
+
+	/** expression */
+	EXPRESSION_STATEMENT,
+
+	/** expression */
+	PRINT,
+
+	/** name, initializer, slot */
+	VARIABLE_DECLARATION,
+
+	/** list of statements */
+	BLOCK,
+
+	/** condition, then branch, else branch */
+	IF,
+
+	/** condition, body */
+	WHILE,
+
+	/** name, function, slot */
+	FUNCTION,
+
+	/** name, only found in the parameter list of a function */
+	PARAMETER,
+
+	/** value */
+	RETURN,
+
+	/** name, list of methods, slot */
+	CLASS,
+
+	/** constant */
+	LITERAL,
+
+	/** operand */
+	NEGATE,
+
+	/** operand */
+	NOT,
+
+	/** left operand, right operand */
+	ADD,
+
+	/** left operand, right operand */
+	SUBTRACT,
+
+	/** left operand, right operand */
+	MULTIPLY,
+
+	/** left operand, right operand */
+	DIVIDE,
+
+	/** left operand, right operand */
+	GREATER,
+
+	/** left operand, right operand */
+	GREATER_EQUAL,
+
+	/** left operand, right operand */
+	LESS,
+
+	/** left operand, right operand */
+	LESS_EQUAL,
+
+	/** left operand, right operand */
+	EQUAL,
+
+	/** left operand, right operand */
+	NOT_EQUAL,
+
+	/** left operand, right operand */
+	AND,
+
+	/** left operand, right operand */
+	OR,
+
+	/** name, none, slot */
+	VARIABLE,
+
+	/** name, value, slot */
+	ASSIGN,
+
+	/** callee, list of arguments */
+	CALL,
+
+	/** object, none, property */
+	GET,
+
+	/** object, value, property */
+	SET,
+
+	/** none, none, slot */
+	THIS;
+
+}
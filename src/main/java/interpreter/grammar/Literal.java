@@ -70,7 +70,7 @@ public sealed interface Literal {
 
 		@Override
 		public LoxValue toValue() {
-			return new LoxNumber(value);
+			return LoxNumber.valueOf(value);
 		}
 
 	}
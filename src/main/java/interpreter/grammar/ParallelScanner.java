@@ -0,0 +1,153 @@
+package interpreter.grammar;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import interpreter.Lox;
+import lombok.NonNull;
+
+/**
+ * Scanner splitting a large source at line starts and scanning the chunks in parallel on the common fork-join pool.
+ * Every chunk is scanned as if it started outside of a string, which only fails when a multi-line string straddles the split:
+ * the source is then re-scanned sequentially from the start of that string, up to the end of the chunk where it closes.
+ */
+public class ParallelScanner {
+
+	public static final int THRESHOLD = Integer.getInteger("lox.parallelScanThreshold", 1 << 20);
+
+	private final Lox lox;
+	private final ByteBuffer source;
+
+	public ParallelScanner(
+		@NonNull Lox lox,
+		@NonNull ByteBuffer source
+	) {
+		this.lox = lox;
+		this.source = source;
+	}
+
+	public TokenBuffer scanTokens() {
+		final var boundaries = boundaries(ForkJoinPool.getCommonPoolParallelism() * 4);
+
+		final var chunks = IntStream.range(0, boundaries.length - 1)
+			.parallel()
+			.mapToObj((index) -> {
+				final var scanner = new Scanner(lox, source, boundaries[index], boundaries[index + 1], 0);
+				scanner.scan();
+
+				return scanner;
+			})
+			.toList();
+
+		final var tokens = new TokenBuffer(source);
+		final var errors = new ArrayList<Scanner.ScanError>();
+
+		var line = 1;
+		var index = 0;
+		while (index < chunks.size()) {
+			var scanner = chunks.get(index);
+			var lineOffset = line;
+
+			while (scanner.unterminatedString() != -1 && index < chunks.size() - 1) {
+				stitch(scanner, lineOffset, tokens, errors, true);
+
+				final var from = scanner.unterminatedString();
+				final var fromLine = scanner.unterminatedStringLine() + lineOffset;
+
+				index = chunkOf(boundaries, closingQuote(from), index + 1);
+
+				scanner = new Scanner(lox, source, from, boundaries[index + 1], fromLine);
+				scanner.scan();
+				lineOffset = 0;
+			}
+
+			stitch(scanner, lineOffset, tokens, errors, false);
+
+			line = scanner.line() + lineOffset;
+			++index;
+		}
+
+		tokens.add(TokenType.EOF, source.limit(), source.limit(), line);
+
+		for (final var error : errors) {
+			error.report(lox);
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * @param straddling whether the chunk ends in a string continuing in the next one, whose error is then dropped
+	 */
+	private static void stitch(Scanner scanner, int lineOffset, TokenBuffer tokens, List<Scanner.ScanError> errors, boolean straddling) {
+		tokens.append(scanner.tokens(), lineOffset);
+
+		final var chunkErrors = scanner.errors();
+		final var count = straddling ? chunkErrors.size() - 1 : chunkErrors.size();
+
+		for (var index = 0; index < count; index++) {
+			errors.add(chunkErrors.get(index).withLineOffset(lineOffset));
+		}
+	}
+
+	/**
+	 * @return the offsets of the chunks, each one after a newline, from <code>0</code> to the end of the source
+	 */
+	private int[] boundaries(int count) {
+		final var length = source.limit();
+		final var size = Math.max(1, length / count);
+
+		final var boundaries = new ArrayList<Integer>();
+		boundaries.add(0);
+
+		var offset = size;
+		while (offset < length) {
+			while (offset < length && source.get(offset - 1) != '\n') {
+				++offset;
+			}
+
+			if (offset < length) {
+				boundaries.add(offset);
+			}
+
+			offset = Math.max(offset + 1, boundaries.getLast() + size);
+		}
+
+		boundaries.add(length);
+
+		return boundaries.stream()
+			.mapToInt(Integer::intValue)
+			.toArray();
+	}
+
+	/**
+	 * @return the offset of the quote closing the string opened at the given offset, or the end of the source
+	 */
+	private int closingQuote(int from) {
+		final var length = source.limit();
+
+		for (var offset = from + 1; offset < length; offset++) {
+			if (source.get(offset) == '"') {
+				return offset;
+			}
+		}
+
+		return length;
+	}
+
+	/**
+	 * @return the index of the chunk containing the offset, starting the search at the given chunk
+	 */
+	private static int chunkOf(int[] boundaries, int offset, int from) {
+		var index = from;
+		while (index < boundaries.length - 2 && boundaries[index + 1] <= offset) {
+			++index;
+		}
+
+		return index;
+	}
+
+}
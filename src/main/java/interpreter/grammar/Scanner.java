@@ -1,59 +1,134 @@
 package interpreter.grammar;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import interpreter.Lox;
 import lombok.NonNull;
 
+/**
+ * Scanner working on the UTF-8 bytes of the source, such as a memory-mapped file.
+ * Only the lexemes of the tokens the parser keeps are ever decoded.
+ */
 public class Scanner {
 
-	private static final Map<String, TokenType> KEYWORDS = Map.ofEntries(
-		Map.entry("and", TokenType.AND),
-		Map.entry("class", TokenType.CLASS),
-		Map.entry("else", TokenType.ELSE),
-		Map.entry("false", TokenType.FALSE),
-		Map.entry("for", TokenType.FOR),
-		Map.entry("fun", TokenType.FUN),
-		Map.entry("if", TokenType.IF),
-		Map.entry("nil", TokenType.NIL),
-		Map.entry("or", TokenType.OR),
-		Map.entry("print", TokenType.PRINT),
-		Map.entry("return", TokenType.RETURN),
-		Map.entry("super", TokenType.SUPER),
-		Map.entry("this", TokenType.THIS),
-		Map.entry("true", TokenType.TRUE),
-		Map.entry("var", TokenType.VAR),
-		Map.entry("while", TokenType.WHILE)
+	private static final List<Keyword> KEYWORDS = List.of(
+		new Keyword("and", TokenType.AND),
+		new Keyword("class", TokenType.CLASS),
+		new Keyword("else", TokenType.ELSE),
+		new Keyword("false", TokenType.FALSE),
+		new Keyword("for", TokenType.FOR),
+		new Keyword("fun", TokenType.FUN),
+		new Keyword("if", TokenType.IF),
+		new Keyword("nil", TokenType.NIL),
+		new Keyword("or", TokenType.OR),
+		new Keyword("print", TokenType.PRINT),
+		new Keyword("return", TokenType.RETURN),
+		new Keyword("super", TokenType.SUPER),
+		new Keyword("this", TokenType.THIS),
+		new Keyword("true", TokenType.TRUE),
+		new Keyword("var", TokenType.VAR),
+		new Keyword("while", TokenType.WHILE)
 	);
 
 	private final Lox lox;
-	private final String source;
+	private final ByteBuffer source;
+	private final int end;
 
-	private final List<Token> tokens = new ArrayList<>();
+	private final TokenBuffer tokens;
 
-	private int start = 0;
-	private int current = 0;
-	private int line = 1;
+	private final List<ScanError> errors = new ArrayList<>();
+
+	private int start;
+	private int current;
+	private int line;
+	private int unterminatedString = -1;
+	private boolean hadError = false;
+	private int unterminatedStringLine;
+
+	public Scanner(
+		@NonNull Lox lox,
+		@NonNull ByteBuffer source
+	) {
+		this(lox, source, 0, source.limit(), 1);
+	}
 
 	public Scanner(
 		@NonNull Lox lox,
 		@NonNull String source
 	) {
+		this(lox, ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Scanner of the part of the source between two offsets, which must both be at the start of a line.
+	 *
+	 * @param line the number of the line at the start offset
+	 */
+	Scanner(Lox lox, ByteBuffer source, int from, int to, int line) {
 		this.lox = lox;
-		this.source = source;
+		this.source = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		this.end = to;
+		this.tokens = new TokenBuffer(this.source);
+		this.start = from;
+		this.current = from;
+		this.line = line;
 	}
 
-	public List<Token> scanTokens() {
-		tokens.clear();
+	public TokenBuffer scanTokens() {
+		scan();
+
+		tokens.add(TokenType.EOF, current, current, line);
+
+		for (final var error : errors) {
+			error.report(lox);
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * @return a buffer scanning the tokens only as they are accessed, reporting the errors as they are found
+	 */
+	public TokenBuffer scanTokensLazily() {
+		tokens.producer(this);
+
+		return tokens;
+	}
+
+	/**
+	 * Scan until the buffer holds the token at the given index, or the end of file token.
+	 */
+	void fill(int index) {
+		while (tokens.size() <= index) {
+			if (isAtEnd()) {
+				tokens.add(TokenType.EOF, current, current, line);
+				tokens.producer(null);
+				return;
+			}
 
-		while (!isAtEnd()) {
 			start = current;
 			scanToken();
+
+			for (final var error : errors) {
+				error.report(lox);
+			}
+
+			errors.clear();
 		}
+	}
 
-		tokens.add(new Token(TokenType.EOF, "", new Literal.Nil(), line));
+	/**
+	 * Scan up to the end offset, without reporting the errors nor adding the end of file token.
+	 */
+	TokenBuffer scan() {
+		while (!isAtEnd()) {
+			start = current;
+			scanToken();
+		}
 
 		return tokens;
 	}
@@ -107,14 +182,19 @@ public class Scanner {
 					addToken(TokenType.SLASH);
 				}
 			}
-			case ' ', '\r', '\t' -> {}
-			case '\n' -> ++line;
+			case ' ', '\r', '\t' -> skipWhitespace();
+			case '\n' -> {
+				++line;
+				skipWhitespace();
+			}
 			case '"' -> string();
 			default -> {
 				if (isDigitCharacter(character)) {
 					number();
 				} else if (isIdentifierCharacter(character)) {
 					identifier();
+				} else if (character >= 0x80) {
+					nonAscii();
 				} else {
 					error(line, "Unexpected character: %c".formatted(character));
 				}
@@ -123,6 +203,23 @@ public class Scanner {
 	}
 
 	private void string() {
+		final var startLine = line;
+
+		while (current + Long.BYTES <= end) {
+			final var word = source.getLong(current);
+			final var newlines = Swar.matches(word, Swar.NEWLINES);
+			final var quote = Swar.firstIndex(Swar.matches(word, Swar.QUOTES));
+
+			line += Long.bitCount(Swar.before(newlines, quote));
+
+			if (quote < Long.BYTES) {
+				current += quote;
+				break;
+			}
+
+			current += Long.BYTES;
+		}
+
 		char character;
 		while ((character = peek()) != '"' && !isAtEnd()) {
 			if (character == '\n') {
@@ -133,6 +230,9 @@ public class Scanner {
 		}
 
 		if (isAtEnd()) {
+			unterminatedString = start;
+			unterminatedStringLine = startLine;
+
 			error(line, "Unterminated string.");
 			return;
 		}
@@ -140,8 +240,7 @@ public class Scanner {
 		// closing "
 		advance();
 
-		final var value = source.substring(start + 1, current - 1);
-		addToken(TokenType.STRING, new Literal.String(value));
+		addToken(TokenType.STRING);
 	}
 
 	private void number() {
@@ -158,38 +257,153 @@ public class Scanner {
 			}
 		}
 
-		final var value = Double.parseDouble(text());
-		addToken(TokenType.NUMBER, new Literal.Number(value));
+		addToken(TokenType.NUMBER);
+	}
+
+	/**
+	 * Decode the multi-byte character just read, which can only start an identifier.
+	 */
+	private void nonAscii() {
+		current = start;
+
+		final var codePoint = codePointAt(current);
+		if (!isIdentifierCodePoint(codePoint)) {
+			current = sequenceEnd(start);
+			error(line, "Unexpected character: %c".formatted(codePoint));
+			return;
+		}
+
+		identifier();
 	}
 
 	private void identifier() {
-		while (isIdentifierCharacter(peek())) {
-			advance();
+		while (true) {
+			final var character = peek();
+
+			if (isIdentifierCharacter(character)) {
+				advance();
+			} else if (character >= 0x80 && !isAtEnd() && isIdentifierCodePoint(codePointAt(current))) {
+				current = sequenceEnd(current);
+			} else {
+				break;
+			}
+		}
+
+		addToken(keyword());
+	}
+
+	private TokenType keyword() {
+		final var length = current - start;
+
+		for (final var keyword : KEYWORDS) {
+			if (keyword.matches(source, start, length)) {
+				return keyword.type();
+			}
+		}
+
+		return TokenType.IDENTIFIER;
+	}
+
+	private int codePointAt(int index) {
+		final var bytes = new byte[sequenceEnd(index) - index];
+		source.get(index, bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8).codePointAt(0);
+	}
+
+	/**
+	 * @return the end of the character starting at the index, which only spans the continuation bytes actually present before the end
+	 */
+	private int sequenceEnd(int index) {
+		final var limit = Math.min(index + sequenceLength(source.get(index)), end);
+
+		var next = index + 1;
+		while (next < limit && (source.get(next) & 0xC0) == 0x80) {
+			next++;
+		}
+
+		return next;
+	}
+
+	private static int sequenceLength(byte lead) {
+		if ((lead & 0xE0) == 0xC0) {
+			return 2;
+		}
+
+		if ((lead & 0xF0) == 0xE0) {
+			return 3;
+		}
+
+		if ((lead & 0xF8) == 0xF0) {
+			return 4;
 		}
 
-		final var type = KEYWORDS.getOrDefault(text(), TokenType.IDENTIFIER);
-		addToken(type);
+		return 1;
 	}
 
 	private char peek() {
 		return peek(0);
 	}
 
+	/**
+	 * @return the byte as a character, multi-byte characters being seen as characters above <code>0x7F</code>
+	 */
 	private char peek(int n) {
 		final var index = current + n;
 
-		if (index >= source.length()) {
+		if (index >= end) {
 			return '\0';
 		}
 
-		return source.charAt(index);
+		return (char) (source.get(index) & 0xFF);
 	}
 
 	private char advance() {
-		return source.charAt(current++);
+		return (char) (source.get(current++) & 0xFF);
+	}
+
+	/**
+	 * Skip a run of whitespace eight bytes at a time, counting the newlines it contains.
+	 */
+	private void skipWhitespace() {
+		while (current + Long.BYTES <= end) {
+			final var word = source.getLong(current);
+			final var newlines = Swar.matches(word, Swar.NEWLINES);
+			final var whitespace = newlines
+				| Swar.matches(word, Swar.SPACES)
+				| Swar.matches(word, Swar.TABS)
+				| Swar.matches(word, Swar.CARRIAGE_RETURNS);
+			final var limit = Swar.firstIndex(Swar.others(whitespace));
+
+			line += Long.bitCount(Swar.before(newlines, limit));
+			current += limit;
+
+			if (limit < Long.BYTES) {
+				return;
+			}
+		}
+
+		char character;
+		while ((character = peek()) == ' ' || character == '\r' || character == '\t' || character == '\n') {
+			if (character == '\n') {
+				++line;
+			}
+
+			advance();
+		}
 	}
 
 	private void advanceNextLine() {
+		while (current + Long.BYTES <= end) {
+			final var newline = Swar.firstIndex(Swar.matches(source.getLong(current), Swar.NEWLINES));
+
+			current += newline;
+
+			if (newline < Long.BYTES) {
+				return;
+			}
+		}
+
 		while (peek() != '\n' && !isAtEnd()) {
 			advance();
 		}
@@ -200,7 +414,7 @@ public class Scanner {
 			return false;
 		}
 
-		if (source.charAt(current) != expected) {
+		if (source.get(current) != expected) {
 			return false;
 		}
 
@@ -209,31 +423,108 @@ public class Scanner {
 	}
 
 	private void addToken(TokenType type) {
-		addToken(type, new Literal.Nil());
-	}
-
-	private String text() {
-		return source.substring(start, current);
-	}
-
-	private void addToken(TokenType type, Literal literal) {
-		tokens.add(new Token(type, text(), literal, line));
+		tokens.add(type, start, current, line);
 	}
 
 	public boolean isAtEnd() {
-		return current >= source.length();
+		return current >= end;
 	}
 
 	public boolean isDigitCharacter(char character) {
-		return Character.isDigit(character);
+		return character >= '0' && character <= '9';
 	}
 
 	public boolean isIdentifierCharacter(char character) {
-		return character == '_' || Character.isAlphabetic(character) || isDigitCharacter(character);
+		return character == '_' || (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z') || isDigitCharacter(character);
+	}
+
+	public boolean isIdentifierCodePoint(int codePoint) {
+		return codePoint == '_' || Character.isAlphabetic(codePoint) || Character.isDigit(codePoint);
 	}
 
 	private void error(int line, String message) {
-		lox.report(line, "", message);
+		errors.add(new ScanError(line, message));
+		hadError = true;
+	}
+
+	public boolean hadError() {
+		return hadError;
+	}
+
+	/**
+	 * Scan the rest of a lazily scanned source, only to report its errors.
+	 */
+	public void drain() {
+		while (!isAtEnd()) {
+			fill(tokens.size());
+			tokens.release(tokens.size());
+		}
+	}
+
+	TokenBuffer tokens() {
+		return tokens;
+	}
+
+	List<ScanError> errors() {
+		return errors;
+	}
+
+	int line() {
+		return line;
+	}
+
+	/**
+	 * @return the offset of the string still open at the end offset, or <code>-1</code>, in which case the last error is about it
+	 */
+	int unterminatedString() {
+		return unterminatedString;
+	}
+
+	int unterminatedStringLine() {
+		return unterminatedStringLine;
+	}
+
+	private record Keyword(
+		byte[] spelling,
+		TokenType type
+	) {
+
+		public Keyword(String spelling, TokenType type) {
+			this(spelling.getBytes(StandardCharsets.US_ASCII), type);
+		}
+
+		public boolean matches(ByteBuffer source, int start, int length) {
+			if (spelling.length != length) {
+				return false;
+			}
+
+			for (var index = 0; index < length; index++) {
+				if (source.get(start + index) != spelling[index]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+	}
+
+	/**
+	 * Error found while scanning, reported once the whole source is scanned.
+	 */
+	record ScanError(
+		int line,
+		String message
+	) {
+
+		public ScanError withLineOffset(int offset) {
+			return new ScanError(line + offset, message);
+		}
+
+		public void report(Lox lox) {
+			lox.report(line, "", message);
+		}
+
 	}
 
-}
\ No newline at end of file
+}
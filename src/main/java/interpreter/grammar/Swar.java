@@ -0,0 +1,58 @@
+package interpreter.grammar;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Byte searches over eight bytes at once in a <code>long</code> read in little-endian order.
+ * Every mask has the high bit of each matching byte set, so the lowest set bit is the first match.
+ */
+@UtilityClass
+class Swar {
+
+	private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+	public static final long NEWLINES = broadcast('\n');
+	public static final long QUOTES = broadcast('"');
+	public static final long SPACES = broadcast(' ');
+	public static final long TABS = broadcast('\t');
+	public static final long CARRIAGE_RETURNS = broadcast('\r');
+
+	public static long broadcast(char character) {
+		return 0x0101010101010101L * character;
+	}
+
+	/**
+	 * @return the mask of the bytes of the word equal to the byte of the pattern, without false positives
+	 */
+	public static long matches(long word, long pattern) {
+		final var difference = word ^ pattern;
+
+		return ~(((difference & LOW_BITS) + LOW_BITS) | difference | LOW_BITS);
+	}
+
+	/**
+	 * @return the mask of the bytes absent from the given mask
+	 */
+	public static long others(long mask) {
+		return ~mask & ~LOW_BITS;
+	}
+
+	/**
+	 * @return the index of the first byte in the mask, or 8 if it is empty
+	 */
+	public static int firstIndex(long mask) {
+		return Long.numberOfTrailingZeros(mask) >>> 3;
+	}
+
+	/**
+	 * @return the part of the mask before the given byte index
+	 */
+	public static long before(long mask, int index) {
+		if (index >= 8) {
+			return mask;
+		}
+
+		return mask & ((1L << (index << 3)) - 1);
+	}
+
+}
@@ -0,0 +1,169 @@
+package interpreter.grammar;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import lombok.NonNull;
+
+/**
+ * Token stream stored as parallel primitive arrays of byte offsets into the UTF-8 source.
+ * Lexemes and literal values are only materialized when a {@link Token} is asked for.
+ * A buffer filled lazily by its {@link Scanner} can also release the tokens already parsed, only keeping a window of the stream.
+ */
+public final class TokenBuffer {
+
+	private static final TokenType[] TYPES = TokenType.values();
+	private static final int INITIAL_CAPACITY = 256;
+
+	private final ByteBuffer source;
+
+	private byte[] types = new byte[INITIAL_CAPACITY];
+	private int[] starts = new int[INITIAL_CAPACITY];
+	private int[] ends = new int[INITIAL_CAPACITY];
+	private int[] lines = new int[INITIAL_CAPACITY];
+	private int size = 0;
+	private int released = 0;
+	private Scanner producer = null;
+
+	public TokenBuffer(
+		@NonNull ByteBuffer source
+	) {
+		this.source = source;
+	}
+
+	/**
+	 * Scan the tokens on demand, as they are accessed.
+	 */
+	void producer(Scanner producer) {
+		this.producer = producer;
+	}
+
+	/**
+	 * @param start the offset of the first character of the lexeme
+	 * @param end the offset after the last character of the lexeme
+	 */
+	public void add(TokenType type, int start, int end, int line) {
+		if (size == types.length) {
+			final var capacity = size * 2;
+
+			types = Arrays.copyOf(types, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+		}
+
+		types[size] = (byte) type.ordinal();
+		starts[size] = start;
+		ends[size] = end;
+		lines[size] = line;
+		++size;
+	}
+
+	/**
+	 * Append the tokens of another buffer over the same source, shifting their line numbers.
+	 */
+	public void append(TokenBuffer other, int lineOffset) {
+		for (var index = 0; index < other.size; index++) {
+			add(TYPES[other.types[index]], other.starts[index], other.ends[index], other.lines[index] + lineOffset);
+		}
+	}
+
+	/**
+	 * Forget the tokens before the given index, which must not be accessed anymore.
+	 * A buffer scanned ahead of time keeps them, as compacting it would not shrink its arrays.
+	 */
+	public void release(int index) {
+		if (producer == null) {
+			return;
+		}
+
+		final var count = index - released;
+
+		System.arraycopy(types, count, types, 0, size - count);
+		System.arraycopy(starts, count, starts, 0, size - count);
+		System.arraycopy(ends, count, ends, 0, size - count);
+		System.arraycopy(lines, count, lines, 0, size - count);
+
+		size -= count;
+		released = index;
+	}
+
+	/**
+	 * @return the number of tokens scanned so far
+	 */
+	public int size() {
+		return released + size;
+	}
+
+	public TokenType type(int index) {
+		final var slot = slot(index);
+
+		return TYPES[types[slot]];
+	}
+
+	public int line(int index) {
+		final var slot = slot(index);
+
+		return lines[slot];
+	}
+
+	public String lexeme(int index) {
+		final var slot = slot(index);
+
+		return decode(starts[slot], ends[slot]);
+	}
+
+	public Literal literal(int index) {
+		final var slot = slot(index);
+
+		return switch (TYPES[types[slot]]) {
+			case STRING -> new Literal.String(decode(starts[slot] + 1, ends[slot] - 1));
+			case NUMBER -> new Literal.Number(Double.parseDouble(decode(starts[slot], ends[slot])));
+			default -> new Literal.Nil();
+		};
+	}
+
+	public Token token(int index) {
+		return new Token(type(index), lexeme(index), literal(index), line(index));
+	}
+
+	/**
+	 * Compute the slot before reading an array, as filling the buffer can grow them.
+	 */
+	private int slot(int index) {
+		if (producer != null && index >= size()) {
+			producer.fill(index);
+		}
+
+		return index - released;
+	}
+
+	/**
+	 * Append the token as formatted by {@link Token#format()}, without creating it.
+	 */
+	public void format(int index, StringBuilder builder) {
+		final var slot = slot(index);
+		final var type = TYPES[types[slot]];
+		final var lexeme = decode(starts[slot], ends[slot]);
+
+		builder.append(type)
+			.append(' ')
+			.append(lexeme)
+			.append(' ');
+
+		switch (type) {
+			case STRING -> builder.append(lexeme, 1, lexeme.length() - 1);
+			case NUMBER -> builder.append(Double.parseDouble(lexeme));
+			default -> builder.append("null");
+		}
+	}
+
+	private String decode(int start, int end) {
+		final var bytes = new byte[end - start];
+		source.get(start, bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,261 @@
+package interpreter.optimizer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import interpreter.Lox;
+import interpreter.evaluating.Interpreter;
+import interpreter.evaluating.RuntimeError;
+import interpreter.evaluating.value.LoxBoolean;
+import interpreter.evaluating.value.LoxNil;
+import interpreter.evaluating.value.LoxNumber;
+import interpreter.evaluating.value.LoxString;
+import interpreter.evaluating.value.LoxValue;
+import interpreter.grammar.Literal;
+import interpreter.grammar.TokenType;
+import interpreter.parser.Expression;
+import interpreter.parser.Statement;
+
+/**
+ * Rewrites resolved syntax trees, folding constant expressions and removing branches that can never run.
+ * Bindings and frames are carried over to the rewritten nodes, so the optimizer must run after the resolver.
+ * An expression that would fail at runtime is never folded, its error is still reported with its own line.
+ */
+public class Optimizer implements Statement.Visitor<Optional<Statement>>, Expression.Visitor<Expression> {
+
+	private final Interpreter folder;
+
+	public Optimizer(Lox lox) {
+		this.folder = new Interpreter(lox);
+	}
+
+	public List<Statement> optimize(List<Statement> statements) {
+		return statements.stream()
+			.map(this::optimize)
+			.flatMap(Optional::stream)
+			.flatMap(Optimizer::inline)
+			.toList();
+	}
+
+	private Optional<Statement> optimize(Statement statement) {
+		return visit(statement);
+	}
+
+	private Statement optimizeBranch(Statement statement) {
+		final var optimized = optimize(statement).orElseGet(() -> new Statement.Block(List.of()));
+
+		if (optimized instanceof Statement.Block block && block.statements().size() == 1 && declaresNothing(block)) {
+			return block.statements().getFirst();
+		}
+
+		return optimized;
+	}
+
+	/**
+	 * A block that declares nothing does not open a scope, so its statements can run directly in the enclosing list.
+	 * This removes the extra block a desugared <code>for</code> loop wraps around its body and increment.
+	 */
+	private static Stream<Statement> inline(Statement statement) {
+		if (statement instanceof Statement.Block block && declaresNothing(block)) {
+			return block.statements().stream();
+		}
+
+		return Stream.of(statement);
+	}
+
+	private static boolean declaresNothing(Statement.Block block) {
+		return block.statements()
+			.stream()
+			.noneMatch((statement) -> statement instanceof Statement.Variable || statement instanceof Statement.Function || statement instanceof Statement.Class);
+	}
+
+	private Expression optimize(Expression expression) {
+		return visit(expression);
+	}
+
+	@Override
+	public Optional<Statement> visitExpression(Statement.Expression expression) {
+		final var optimized = optimize(expression.expression());
+		if (optimized instanceof Expression.Literal) {
+			return Optional.empty();
+		}
+
+		return Optional.of(new Statement.Expression(optimized));
+	}
+
+	@Override
+	public Optional<Statement> visitPrint(Statement.Print print) {
+		return Optional.of(new Statement.Print(optimize(print.expression())));
+	}
+
+	@Override
+	public Optional<Statement> visitVariable(Statement.Variable variable) {
+		return Optional.of(new Statement.Variable(variable.name(), variable.initializer().map(this::optimize), variable.binding()));
+	}
+
+	@Override
+	public Optional<Statement> visitBlock(Statement.Block block) {
+		return Optional.of(new Statement.Block(optimize(block.statements())));
+	}
+
+	@Override
+	public Optional<Statement> visitIf(Statement.If if_) {
+		final var condition = optimize(if_.condition());
+
+		if (condition instanceof Expression.Literal literal) {
+			if (folder.isTruthy(literal.constant())) {
+				return optimize(if_.thenBranch());
+			}
+
+			return if_.elseBranch().flatMap(this::optimize);
+		}
+
+		return Optional.of(new Statement.If(condition, optimizeBranch(if_.thenBranch()), if_.elseBranch().map(this::optimizeBranch)));
+	}
+
+	@Override
+	public Optional<Statement> visitWhile(Statement.While while_) {
+		final var condition = optimize(while_.condition());
+
+		if (condition instanceof Expression.Literal literal && !folder.isTruthy(literal.constant())) {
+			return Optional.empty();
+		}
+
+		return Optional.of(new Statement.While(condition, optimizeBranch(while_.body())));
+	}
+
+	@Override
+	public Optional<Statement> visitFunction(Statement.Function function) {
+		return Optional.of(optimizeFunction(function));
+	}
+
+	/**
+	 * Optimize the body in place, or once it is parsed if it is deferred.
+	 */
+	private Statement.Function optimizeFunction(Statement.Function function) {
+		function.body().apply(this::optimize);
+
+		return function;
+	}
+
+	@Override
+	public Optional<Statement> visitReturn(Statement.Return return_) {
+		return Optional.of(new Statement.Return(return_.keyword(), return_.value().map(this::optimize)));
+	}
+
+	@Override
+	public Optional<Statement> visitClass(Statement.Class class_) {
+		final var methods = class_.methods()
+			.stream()
+			.map(this::optimizeFunction)
+			.toList();
+
+		return Optional.of(new Statement.Class(class_.name(), methods, class_.binding()));
+	}
+
+	@Override
+	public Expression visitLiteral(Expression.Literal literal) {
+		return literal;
+	}
+
+	@Override
+	public Expression visitGrouping(Expression.Grouping grouping) {
+		return optimize(grouping.expression());
+	}
+
+	@Override
+	public Expression visitUnary(Expression.Unary unary) {
+		return fold(new Expression.Unary(unary.operator(), optimize(unary.right())));
+	}
+
+	@Override
+	public Expression visitBinary(Expression.Binary binary) {
+		return fold(new Expression.Binary(optimize(binary.left()), binary.operator(), optimize(binary.right())));
+	}
+
+	@Override
+	public Expression visitVariable(Expression.Variable variable) {
+		return variable;
+	}
+
+	@Override
+	public Expression visitAssign(Expression.Assign assign) {
+		return new Expression.Assign(assign.name(), optimize(assign.value()), assign.binding());
+	}
+
+	@Override
+	public Expression visitLogical(Expression.Logical logical) {
+		final var left = optimize(logical.left());
+		final var right = optimize(logical.right());
+
+		if (left instanceof Expression.Literal literal) {
+			final var truthy = folder.isTruthy(literal.constant());
+
+			if (TokenType.OR.equals(logical.operator().type()) == truthy) {
+				return left;
+			}
+
+			return right;
+		}
+
+		return new Expression.Logical(left, logical.operator(), right);
+	}
+
+	@Override
+	public Expression visitCall(Expression.Call call) {
+		final var arguments = call.arguments()
+			.stream()
+			.map(this::optimize)
+			.toList();
+
+		return new Expression.Call(optimize(call.callee()), call.parenthesis(), arguments);
+	}
+
+	@Override
+	public Expression visitGet(Expression.Get get) {
+		return new Expression.Get(optimize(get.object()), get.name(), get.cache());
+	}
+
+	@Override
+	public Expression visitSet(Expression.Set set) {
+		return new Expression.Set(optimize(set.object()), set.name(), optimize(set.value()), set.cache());
+	}
+
+	@Override
+	public Expression visitThis(Expression.This this_) {
+		return this_;
+	}
+
+	/**
+	 * Evaluate an operator whose operands are all literals, keeping it as is if it would fail at runtime.
+	 */
+	private Expression fold(Expression expression) {
+		final var foldable = switch (expression) {
+			case Expression.Unary unary -> unary.right() instanceof Expression.Literal;
+			case Expression.Binary binary -> binary.left() instanceof Expression.Literal && binary.right() instanceof Expression.Literal;
+			default -> false;
+		};
+
+		if (!foldable) {
+			return expression;
+		}
+
+		try {
+			return new Expression.Literal(toLiteral(folder.evaluate(expression)));
+		} catch (RuntimeError __) {
+			return expression;
+		}
+	}
+
+	private static Literal toLiteral(LoxValue value) {
+		return switch (value) {
+			case LoxNil __ -> new Literal.Nil();
+			case LoxBoolean booleanValue -> new Literal.Boolean(booleanValue.value());
+			case LoxNumber(final var numberValue) -> new Literal.Number(numberValue);
+			case LoxString(final var stringValue) -> new Literal.String(stringValue);
+			default -> throw new IllegalStateException("not a constant: " + value);
+		};
+	}
+
+}
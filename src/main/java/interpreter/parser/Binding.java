@@ -0,0 +1,44 @@
+package interpreter.parser;
+
+/**
+ * Resolution of a variable declaration or reference, filled in by the resolver.
+ * An unresolved binding refers to a global variable.
+ */
+public final class Binding {
+
+	private Kind kind = Kind.GLOBAL;
+	private int slot = 0;
+
+	public void resolve(Kind kind, int slot) {
+		this.kind = kind;
+		this.slot = slot;
+	}
+
+	public boolean isGlobal() {
+		return Kind.GLOBAL.equals(kind);
+	}
+
+	public Kind kind() {
+		return kind;
+	}
+
+	public int slot() {
+		return slot;
+	}
+
+	public enum Kind {
+
+		GLOBAL,
+
+		/** local never captured by a closure, stored directly in the call frame */
+		LOCAL,
+
+		/** local captured by a closure, boxed in a cell of the call frame */
+		CELL,
+
+		/** variable of an enclosing function, reached through a cell captured by the closure */
+		UPVALUE;
+
+	}
+
+}
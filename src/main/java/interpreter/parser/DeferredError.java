@@ -0,0 +1,13 @@
+package interpreter.parser;
+
+/**
+ * Thrown once the errors of a function body parsed on first use are reported, to stop the execution.
+ */
+@SuppressWarnings("serial")
+public class DeferredError extends RuntimeException {
+
+	public DeferredError() {
+		super(null, null, false, false);
+	}
+
+}
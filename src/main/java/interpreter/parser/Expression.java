@@ -2,14 +2,26 @@ package interpreter.parser;
 
 import java.util.List;
 
+import interpreter.evaluating.value.LoxValue;
+import interpreter.evaluating.value.PropertyCache;
 import interpreter.grammar.Token;
 import lombok.NonNull;
 
 public sealed interface Expression {
 
+	/**
+	 * @param constant the runtime value of the literal, shared by every evaluation
+	 */
 	public record Literal(
-		@NonNull interpreter.grammar.Literal value
-	) implements Expression {}
+		@NonNull interpreter.grammar.Literal value,
+		@NonNull LoxValue constant
+	) implements Expression {
+
+		public Literal(interpreter.grammar.Literal value) {
+			this(value, value.toValue());
+		}
+
+	}
 
 	public record Grouping(
 		@NonNull Expression expression
@@ -27,13 +39,27 @@ public sealed interface Expression {
 	) implements Expression {}
 
 	public record Variable(
-		@NonNull Token name
-	) implements Expression {}
+		@NonNull Token name,
+		@NonNull Binding binding
+	) implements Expression {
+
+		public Variable(Token name) {
+			this(name, new Binding());
+		}
+
+	}
 
 	public record Assign(
 		@NonNull Token name,
-		@NonNull Expression value
-	) implements Expression {}
+		@NonNull Expression value,
+		@NonNull Binding binding
+	) implements Expression {
+
+		public Assign(Token name, Expression value) {
+			this(name, value, new Binding());
+		}
+
+	}
 
 	public record Logical(
 		@NonNull Expression left,
@@ -49,18 +75,39 @@ public sealed interface Expression {
 
 	public record Get(
 		@NonNull Expression object,
-		@NonNull Token name
-	) implements Expression {}
+		@NonNull Token name,
+		@NonNull PropertyCache cache
+	) implements Expression {
+
+		public Get(Expression object, Token name) {
+			this(object, name, new PropertyCache());
+		}
+
+	}
 
 	public record Set(
 		@NonNull Expression object,
 		@NonNull Token name,
-		@NonNull Expression value
-	) implements Expression {}
+		@NonNull Expression value,
+		@NonNull PropertyCache cache
+	) implements Expression {
+
+		public Set(Expression object, Token name, Expression value) {
+			this(object, name, value, new PropertyCache());
+		}
+
+	}
 
 	public record This(
-		@NonNull Token keyword
-	) implements Expression {}
+		@NonNull Token keyword,
+		@NonNull Binding binding
+	) implements Expression {
+
+		public This(Token keyword) {
+			this(keyword, new Binding());
+		}
+
+	}
 
 	public interface Visitor<T> {
 
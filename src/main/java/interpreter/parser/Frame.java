@@ -0,0 +1,45 @@
+package interpreter.parser;
+
+import java.util.List;
+
+/**
+ * Layout of the call frame of a function or script, filled in by the resolver.
+ * Every local of the function gets its own slot, blocks do not open frames of their own.
+ */
+public final class Frame {
+
+	private List<Binding> parameters = List.of();
+	private List<Binding> captures = List.of();
+	private int localCount = 0;
+	private int cellCount = 0;
+
+	public void resolve(List<Binding> parameters, List<Binding> captures, int localCount, int cellCount) {
+		this.parameters = parameters;
+		this.captures = captures;
+		this.localCount = localCount;
+		this.cellCount = cellCount;
+	}
+
+	/**
+	 * @return the bindings of the parameters, preceded by <code>this</code> for methods
+	 */
+	public List<Binding> parameters() {
+		return parameters;
+	}
+
+	/**
+	 * @return the variables captured by the closure, resolved in the scope that creates it
+	 */
+	public List<Binding> captures() {
+		return captures;
+	}
+
+	public int localCount() {
+		return localCount;
+	}
+
+	public int cellCount() {
+		return cellCount;
+	}
+
+}
@@ -0,0 +1,64 @@
+package interpreter.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Statements of a function, either parsed with the rest of the script or deferred until they are first needed.
+ * The passes applied to a deferred body, such as resolution, are replayed in order once it is parsed.
+ */
+public final class FunctionBody {
+
+	private List<Statement> statements;
+	private Supplier<List<Statement>> parser;
+	private final List<UnaryOperator<List<Statement>>> passes = new ArrayList<>();
+
+	public FunctionBody(List<Statement> statements) {
+		this.statements = statements;
+		this.parser = null;
+	}
+
+	public FunctionBody(Supplier<List<Statement>> parser) {
+		this.statements = List.of();
+		this.parser = parser;
+	}
+
+	public boolean isParsed() {
+		return parser == null;
+	}
+
+	/**
+	 * Apply a pass to the statements now, or once they are parsed.
+	 */
+	public void apply(UnaryOperator<List<Statement>> pass) {
+		if (isParsed()) {
+			statements = pass.apply(statements);
+		} else {
+			passes.add(pass);
+		}
+	}
+
+	/**
+	 * @return the statements, parsed first if they were deferred
+	 * @throws DeferredError if the deferred statements are invalid, the body then staying empty
+	 */
+	public List<Statement> statements() {
+		if (!isParsed()) {
+			final var deferred = parser;
+			parser = null;
+
+			var parsed = deferred.get();
+			for (final var pass : passes) {
+				parsed = pass.apply(parsed);
+			}
+
+			passes.clear();
+			statements = parsed;
+		}
+
+		return statements;
+	}
+
+}
@@ -2,28 +2,66 @@ package interpreter.parser;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 import interpreter.Lox;
 import interpreter.grammar.Literal;
 import interpreter.grammar.Token;
+import interpreter.grammar.TokenBuffer;
 import interpreter.grammar.TokenType;
 import lombok.NonNull;
 
 public class Parser {
 
+	private static final Map<TokenType, Precedence> INFIX_PRECEDENCES = new EnumMap<>(Map.ofEntries(
+		Map.entry(TokenType.EQUAL, Precedence.ASSIGNMENT),
+		Map.entry(TokenType.OR, Precedence.OR),
+		Map.entry(TokenType.AND, Precedence.AND),
+		Map.entry(TokenType.BANG_EQUAL, Precedence.EQUALITY),
+		Map.entry(TokenType.EQUAL_EQUAL, Precedence.EQUALITY),
+		Map.entry(TokenType.GREATER, Precedence.COMPARISON),
+		Map.entry(TokenType.GREATER_EQUAL, Precedence.COMPARISON),
+		Map.entry(TokenType.LESS, Precedence.COMPARISON),
+		Map.entry(TokenType.LESS_EQUAL, Precedence.COMPARISON),
+		Map.entry(TokenType.MINUS, Precedence.TERM),
+		Map.entry(TokenType.PLUS, Precedence.TERM),
+		Map.entry(TokenType.SLASH, Precedence.FACTOR),
+		Map.entry(TokenType.STAR, Precedence.FACTOR),
+		Map.entry(TokenType.LEFT_PAREN, Precedence.CALL),
+		Map.entry(TokenType.DOT, Precedence.CALL)
+	));
+
 	private final Lox lox;
-	private final List<Token> tokens;
+	private final TokenBuffer tokens;
+	private final boolean lazy;
+	private final List<FunctionBody> deferredBodies = new ArrayList<>();
 
 	private int current = 0;
+	private int nesting = 0;
 
 	public Parser(
 		@NonNull Lox lox,
-		@NonNull List<Token> tokens
+		@NonNull TokenBuffer tokens
+	) {
+		this(lox, tokens, false);
+	}
+
+	/**
+	 * @param lazy whether to only match the braces of the bodies of the top-level functions and methods, parsing them on first call
+	 */
+	public Parser(
+		@NonNull Lox lox,
+		@NonNull TokenBuffer tokens,
+		boolean lazy
 	) {
 		this.lox = lox;
 		this.tokens = tokens;
+		this.lazy = lazy;
 	}
 
 	public List<Statement> parse() {
@@ -40,6 +78,59 @@ public class Parser {
 		}
 	}
 
+	/**
+	 * Parse the top-level declarations one at a time, releasing the tokens of each one once it is parsed.
+	 * The iteration stops at the first syntax error, like {@link #parse()}.
+	 */
+	public Iterator<Statement> declarations() {
+		return new Iterator<>() {
+
+			private Statement next = null;
+			private boolean failed = false;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null && !failed && !isAtEnd()) {
+					try {
+						next = declarationStatement();
+						tokens.release(current);
+					} catch (ParseError __) {
+						failed = true;
+					}
+				}
+
+				return next != null;
+			}
+
+			@Override
+			public Statement next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				final var statement = next;
+				next = null;
+
+				return statement;
+			}
+
+		};
+	}
+
+	/**
+	 * Parse and resolve the deferred bodies that were never called, so that their errors are reported after the run.
+	 * As with {@link #parse()}, a syntax error is not reported after another error.
+	 */
+	public void parseDeferredBodies() {
+		for (final var body : deferredBodies) {
+			try {
+				body.statements();
+			} catch (DeferredError __) {
+				/* already reported */
+			}
+		}
+	}
+
 	public Optional<Expression> parseExpression() {
 		try {
 			return Optional.of(expression());
@@ -70,7 +161,8 @@ public class Parser {
 	}
 
 	private Statement.Class classDeclarationStatement() {
-		final var name = consume(TokenType.IDENTIFIER, "Expect class name.");
+		consume(TokenType.IDENTIFIER, "Expect class name.");
+		final var name = previous();
 		consume(TokenType.LEFT_BRACE, "Expect '{' before class body.");
 
 		final var methods = new ArrayList<Statement.Function>();
@@ -84,7 +176,8 @@ public class Parser {
 	}
 
 	private Statement.Function functionStatement(String kind) {
-		final var name = consume(TokenType.IDENTIFIER, "Expect %s name.".formatted(kind));
+		consume(TokenType.IDENTIFIER, "Expect %s name.".formatted(kind));
+		final var name = previous();
 
 		consume(TokenType.LEFT_PAREN, "Expect '(' after %s name.".formatted(kind));
 
@@ -95,20 +188,68 @@ public class Parser {
 					throw error(peek(), "Can't have more than 255 parameters.");
 				}
 
-				parameters.add(consume(TokenType.IDENTIFIER, "Expect parameter name."));
+				consume(TokenType.IDENTIFIER, "Expect parameter name.");
+				parameters.add(previous());
 			} while (match(TokenType.COMMA));
 		}
 
 		consume(TokenType.RIGHT_PAREN, "Expect ')' after parameters.");
 		consume(TokenType.LEFT_BRACE, "Expect '{' before %s} body.".formatted(kind));
 
-		final var body = block();
+		final var body = lazy && nesting == 0
+			? deferredBody()
+			: new FunctionBody(block());
 
 		return new Statement.Function(name, parameters, body);
 	}
 
+	/**
+	 * Skip over a body by matching its braces, leaving it to be parsed on first use.
+	 */
+	private FunctionBody deferredBody() {
+		final var start = current;
+
+		var depth = 1;
+		while (!isAtEnd()) {
+			switch (peekType()) {
+				case LEFT_BRACE -> ++depth;
+				case RIGHT_BRACE -> --depth;
+				default -> {}
+			}
+
+			advance();
+
+			if (depth == 0) {
+				final var body = new FunctionBody(() -> parseBody(start));
+				deferredBodies.add(body);
+
+				return body;
+			}
+		}
+
+		/* unbalanced braces, the error is reported right away */
+		current = start;
+
+		return new FunctionBody(block());
+	}
+
+	private List<Statement> parseBody(int start) {
+		final var resumed = current;
+
+		try {
+			current = start;
+
+			return block();
+		} catch (ParseError __) {
+			throw new DeferredError();
+		} finally {
+			current = resumed;
+		}
+	}
+
 	private Statement.Variable variableDeclarationStatement() {
-		final var name = consume(TokenType.IDENTIFIER, "Expect variable name.");
+		consume(TokenType.IDENTIFIER, "Expect variable name.");
+		final var name = previous();
 
 		var initializer = Optional.<Expression>empty();
 		if (match(TokenType.EQUAL)) {
@@ -245,8 +386,13 @@ public class Parser {
 	private List<Statement> block() {
 		final var statements = new ArrayList<Statement>();
 
-		while (!check(TokenType.RIGHT_BRACE) && !isAtEnd()) {
-			statements.add(declarationStatement());
+		++nesting;
+		try {
+			while (!check(TokenType.RIGHT_BRACE) && !isAtEnd()) {
+				statements.add(declarationStatement());
+			}
+		} finally {
+			--nesting;
 		}
 
 		consume(TokenType.RIGHT_BRACE, "Expect '}' after block.");
@@ -255,133 +401,94 @@ public class Parser {
 	}
 
 	private @NonNull Expression expression() {
-		return assignmentExpression();
+		return expression(Precedence.ASSIGNMENT);
 	}
 
-	private Expression assignmentExpression() {
-		final var expression = orExpression();
+	/**
+	 * Parse an expression by precedence climbing, consuming only the infix operators binding at least as tight as the given precedence.
+	 */
+	private Expression expression(Precedence minimum) {
+		var expression = prefixExpression();
 
-		if (match(TokenType.EQUAL)) {
-			final var equals = previous();
-			final var value = assignmentExpression();
+		while (true) {
+			final var precedence = INFIX_PRECEDENCES.get(peekType());
 
-			if (expression instanceof Expression.Variable(final var name)) {
-				return new Expression.Assign(name, value);
-			} else if (expression instanceof Expression.Get(final var object, final var name)) {
-				return new Expression.Set(object, name, value);
+			if (precedence == null || precedence.compareTo(minimum) < 0) {
+				return expression;
 			}
 
-			throw error(equals, "Invalid assignment target.");
-		}
-
-		return expression;
-	}
-
-	private Expression orExpression() {
-		var expression = andExpression();
-
-		while (match(TokenType.OR)) {
-			final var operator = previous();
-			final var right = andExpression();
-
-			expression = new Expression.Logical(expression, operator, right);
-		}
-
-		return expression;
-	}
-
-	private Expression andExpression() {
-		var expression = equalityExpression();
-
-		while (match(TokenType.AND)) {
-			final var operator = previous();
-			final var right = equalityExpression();
-
-			expression = new Expression.Logical(expression, operator, right);
-		}
-
-		return expression;
-	}
-
-	private Expression equalityExpression() {
-		var expression = comparisonExpression();
-
-		while (match(TokenType.BANG_EQUAL, TokenType.EQUAL_EQUAL)) {
-			final var operator = previous();
-			final var right = comparisonExpression();
-
-			expression = new Expression.Binary(expression, operator, right);
-		}
-
-		return expression;
-	}
-
-	private Expression comparisonExpression() {
-		var expression = termExpression();
-
-		while (match(TokenType.GREATER, TokenType.GREATER_EQUAL, TokenType.LESS, TokenType.LESS_EQUAL)) {
-			final var operator = previous();
-			final var right = termExpression();
-
-			expression = new Expression.Binary(expression, operator, right);
-		}
-
-		return expression;
-	}
-
-	private Expression termExpression() {
-		var expression = factorExpression();
-
-		while (match(TokenType.MINUS, TokenType.PLUS)) {
-			final var operator = previous();
-			final var right = factorExpression();
-
-			expression = new Expression.Binary(expression, operator, right);
+			advance();
+			expression = infixExpression(expression, precedence);
 		}
-
-		return expression;
 	}
 
-	private Expression factorExpression() {
-		var expression = unaryExpression();
-
-		while (match(TokenType.SLASH, TokenType.STAR)) {
-			final var operator = previous();
-			final var right = unaryExpression();
+	private Expression prefixExpression() {
+		return switch (peekType()) {
+			case BANG, MINUS -> {
+				advance();
+				yield new Expression.Unary(previous(), expression(Precedence.UNARY));
+			}
+			case FALSE -> {
+				advance();
+				yield new Expression.Literal(new Literal.Boolean(false));
+			}
+			case TRUE -> {
+				advance();
+				yield new Expression.Literal(new Literal.Boolean(true));
+			}
+			case NIL -> {
+				advance();
+				yield new Expression.Literal(new Literal.Nil());
+			}
+			case THIS -> {
+				advance();
+				yield new Expression.This(previous());
+			}
+			case IDENTIFIER -> {
+				advance();
+				yield new Expression.Variable(previous());
+			}
+			case STRING, NUMBER -> {
+				advance();
+				yield new Expression.Literal(tokens.literal(current - 1));
+			}
+			case LEFT_PAREN -> {
+				advance();
+				final var expression = expression();
 
-			expression = new Expression.Binary(expression, operator, right);
-		}
+				consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
 
-		return expression;
+				yield new Expression.Grouping(expression);
+			}
+			default -> throw error(peek(), "Expect expression.");
+		};
 	}
 
-	private Expression unaryExpression() {
-		if (match(TokenType.BANG, TokenType.MINUS)) {
-			final var operator = previous();
-			final var right = unaryExpression();
-
-			return new Expression.Unary(operator, right);
-		}
+	private Expression infixExpression(Expression left, Precedence precedence) {
+		return switch (tokens.type(current - 1)) {
+			case EQUAL -> assignmentExpression(left, previous());
+			case OR, AND -> new Expression.Logical(left, previous(), expression(precedence.tighter()));
+			case LEFT_PAREN -> finishCallExpression(left);
+			case DOT -> {
+				consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
+				final var name = previous();
 
-		return callExpression();
+				yield new Expression.Get(left, name);
+			}
+			default -> new Expression.Binary(left, previous(), expression(precedence.tighter()));
+		};
 	}
 
-	private Expression callExpression() {
-		var expression = primaryExpression();
+	private Expression assignmentExpression(Expression target, Token equals) {
+		final var value = expression(Precedence.ASSIGNMENT);
 
-		while (true) {
-			if (match(TokenType.LEFT_PAREN)) {
-				expression = finishCallExpression(expression);
-			} else if (match(TokenType.DOT)) {
-				final var name = consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
-
-				expression = new Expression.Get(expression, name);
-			} else {
-				break;
-			}
+		if (target instanceof Expression.Variable variable) {
+			return new Expression.Assign(variable.name(), value);
+		} else if (target instanceof Expression.Get(final var object, final var name, final var __)) {
+			return new Expression.Set(object, name, value);
 		}
 
-		return expression;
+		throw error(equals, "Invalid assignment target.");
 	}
 
 	private Expression.Call finishCallExpression(Expression callee) {
@@ -397,47 +504,12 @@ public class Parser {
 			} while (match(TokenType.COMMA));
 		}
 
-		final var parenthesis = consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments.");
+		consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments.");
+		final var parenthesis = previous();
 
 		return new Expression.Call(callee, parenthesis, arguments);
 	}
 
-	private Expression primaryExpression() {
-		if (match(TokenType.FALSE)) {
-			return new Expression.Literal(new Literal.Boolean(false));
-		}
-
-		if (match(TokenType.TRUE)) {
-			return new Expression.Literal(new Literal.Boolean(true));
-		}
-
-		if (match(TokenType.NIL)) {
-			return new Expression.Literal(new Literal.Nil());
-		}
-
-		if (match(TokenType.THIS)) {
-			return new Expression.This(previous());
-		}
-
-		if (match(TokenType.IDENTIFIER)) {
-			return new Expression.Variable(previous());
-		}
-
-		if (match(TokenType.STRING, TokenType.NUMBER)) {
-			return new Expression.Literal(previous().literal());
-		}
-
-		if (match(TokenType.LEFT_PAREN)) {
-			final var expression = expression();
-
-			consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
-
-			return new Expression.Grouping(expression);
-		}
-
-		throw error(peek(), "Expect expression.");
-	}
-
 	private boolean match(TokenType type) {
 		if (check(type)) {
 			advance();
@@ -447,22 +519,12 @@ public class Parser {
 		return false;
 	}
 
-	private boolean match(TokenType... types) {
-		for (final var type : types) {
-			if (match(type)) {
-				return true;
-			}
+	private void consume(TokenType type, String message) {
+		if (!check(type)) {
+			throw error(peek(), message);
 		}
 
-		return false;
-	}
-
-	private Token consume(TokenType type, String message) {
-		if (check(type)) {
-			return advance();
-		}
-
-		throw error(peek(), message);
+		advance();
 	}
 
 	private boolean check(TokenType type) {
@@ -470,31 +532,41 @@ public class Parser {
 			return false;
 		}
 
-		return type.equals(peek().type());
+		return type.equals(peekType());
 	}
 
-	private Token advance() {
+	private void advance() {
 		if (!isAtEnd()) {
 			++current;
 		}
-
-		return previous();
 	}
 
 	private boolean isAtEnd() {
-		return TokenType.EOF.equals(peek().type());
+		return TokenType.EOF.equals(peekType());
+	}
+
+	private TokenType peekType() {
+		return tokens.type(current);
 	}
 
+	/**
+	 * @return the current token, materialized from the buffer
+	 */
 	private Token peek() {
-		return tokens.get(current);
+		return tokens.token(current);
 	}
 
 	private Token previous() {
-		return tokens.get(current - 1);
+		return tokens.token(current - 1);
 	}
 
+	/**
+	 * Report a syntax error, unless the scanner already reported an error that caused it.
+	 */
 	private ParseError error(Token token, String message) {
-		lox.error(token, message);
+		if (!lox.hadError()) {
+			lox.error(token, message);
+		}
 
 		throw new ParseError(token, message);
 	}
@@ -503,11 +575,11 @@ public class Parser {
 		advance();
 
 		while (!isAtEnd()) {
-			if (previous().type() == TokenType.SEMICOLON) {
+			if (tokens.type(current - 1) == TokenType.SEMICOLON) {
 				return;
 			}
 
-			switch (peek().type()) {
+			switch (peekType()) {
 				case CLASS:
 				case FUN:
 				case VAR:
@@ -526,4 +598,30 @@ public class Parser {
 		}
 	}
 
+	/**
+	 * Binding power of the infix operators, from the loosest to the tightest.
+	 */
+	private enum Precedence {
+
+		ASSIGNMENT,
+		OR,
+		AND,
+		EQUALITY,
+		COMPARISON,
+		TERM,
+		FACTOR,
+		UNARY,
+		CALL;
+
+		private static final Precedence[] VALUES = values();
+
+		/**
+		 * @return the precedence of the right operand of a left-associative operator
+		 */
+		public Precedence tighter() {
+			return VALUES[ordinal() + 1];
+		}
+
+	}
+
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package interpreter.parser;
 import java.util.List;
 import java.util.Optional;
 
+import interpreter.evaluating.compiler.FunctionProfile;
 import interpreter.grammar.Token;
 import lombok.NonNull;
 
@@ -18,8 +19,15 @@ public sealed interface Statement {
 
 	public record Variable(
 		@NonNull Token name,
-		@NonNull Optional<interpreter.parser.Expression> initializer
-	) implements Statement {}
+		@NonNull Optional<interpreter.parser.Expression> initializer,
+		@NonNull Binding binding
+	) implements Statement {
+
+		public Variable(Token name, Optional<interpreter.parser.Expression> initializer) {
+			this(name, initializer, new Binding());
+		}
+
+	}
 
 	public record Block(
 		@NonNull List<Statement> statements
@@ -39,8 +47,21 @@ public sealed interface Statement {
 	public record Function(
 		@NonNull Token name,
 		@NonNull List<Token> parameters,
-		@NonNull List<Statement> body
-	) implements Statement {}
+		@NonNull FunctionBody body,
+		@NonNull Frame frame,
+		@NonNull Binding binding,
+		@NonNull FunctionProfile profile
+	) implements Statement {
+
+		public Function(Token name, List<Token> parameters, FunctionBody body) {
+			this(name, parameters, body, new Frame(), new Binding());
+		}
+
+		public Function(Token name, List<Token> parameters, FunctionBody body, Frame frame, Binding binding) {
+			this(name, parameters, body, frame, binding, new FunctionProfile());
+		}
+
+	}
 
 	public record Return(
 		@NonNull Token keyword,
@@ -49,8 +70,15 @@ public sealed interface Statement {
 
 	public record Class(
 		@NonNull Token name,
-		@NonNull List<Function> methods
-	) implements Statement {}
+		@NonNull List<Function> methods,
+		@NonNull Binding binding
+	) implements Statement {
+
+		public Class(Token name, List<Function> methods) {
+			this(name, methods, new Binding());
+		}
+
+	}
 
 	public interface Visitor<T> {
 
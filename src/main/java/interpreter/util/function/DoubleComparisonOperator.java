@@ -1,8 +0,0 @@
-package interpreter.util.function;
-
-@FunctionalInterface
-public interface DoubleComparisonOperator {
-
-	boolean applyAsDouble(double left, double right);
-
-}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package interpreter.vm;
+
+/**
+ * Activation of a closure. Frames are pooled by the {@link VirtualMachine} and reused across calls.
+ */
+final class CallFrame {
+
+	VmClosure closure;
+	int ip;
+
+	/** Stack index of slot 0, holding either the callee or the receiver. */
+	int base;
+
+	/** Stack index where the returned value is pushed. */
+	int returnSlot;
+
+}
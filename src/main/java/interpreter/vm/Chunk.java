@@ -0,0 +1,70 @@
+package interpreter.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Chunk {
+
+	private byte[] code = new byte[64];
+	private int[] lines = new int[64];
+	private int count = 0;
+
+	private final List<Object> constants = new ArrayList<>();
+	private final Map<Object, Integer> constantIndexes = new HashMap<>();
+	private Object[] constantArray = null;
+
+	public void write(byte value, int line) {
+		if (count == code.length) {
+			code = Arrays.copyOf(code, count * 2);
+			lines = Arrays.copyOf(lines, count * 2);
+		}
+
+		code[count] = value;
+		lines[count] = line;
+		++count;
+	}
+
+	public void patch(int offset, byte value) {
+		code[offset] = value;
+	}
+
+	/**
+	 * Add a constant to the pool, sharing the slot of an equal constant if one was already added.
+	 *
+	 * @return the index of the constant
+	 */
+	public int addConstant(Object value) {
+		return constantIndexes.computeIfAbsent(value, (__) -> addUniqueConstant(value));
+	}
+
+	public int addUniqueConstant(Object value) {
+		constants.add(value);
+		constantArray = null;
+
+		return constants.size() - 1;
+	}
+
+	public int count() {
+		return count;
+	}
+
+	public byte[] code() {
+		return code;
+	}
+
+	public Object[] constants() {
+		if (constantArray == null) {
+			constantArray = constants.toArray();
+		}
+
+		return constantArray;
+	}
+
+	public int line(int offset) {
+		return lines[offset];
+	}
+
+}
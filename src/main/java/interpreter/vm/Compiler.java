@@ -0,0 +1,643 @@
+package interpreter.vm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import interpreter.Lox;
+import interpreter.evaluating.Resolver.FunctionType;
+import interpreter.grammar.Token;
+import interpreter.grammar.TokenType;
+import interpreter.parser.Expression;
+import interpreter.parser.Statement;
+import lombok.NonNull;
+
+/**
+ * Single pass compiler from a resolved syntax tree to {@link VirtualMachine} bytecode.
+ * Semantic errors are expected to have been reported by the {@link interpreter.evaluating.Resolver} already.
+ */
+public class Compiler implements Statement.Visitor<Void>, Expression.Visitor<Void> {
+
+	private static final int MAX_SHORT = 0xffff;
+
+	private final Lox lox;
+
+	private FunctionState current;
+	private int line = 0;
+
+	public Compiler(
+		@NonNull Lox lox
+	) {
+		this.lox = lox;
+	}
+
+	public VmFunction compile(List<Statement> statements) {
+		current = new FunctionState(null, FunctionType.NONE, "script", 0);
+
+		statements.forEach(this::compile);
+
+		emitReturn();
+		return endFunction();
+	}
+
+	private void compile(Statement statement) {
+		visit(statement);
+	}
+
+	private void compile(Expression expression) {
+		visit(expression);
+	}
+
+	@Override
+	public Void visitExpression(Statement.Expression expression) {
+		compile(expression.expression());
+		emit(OpCode.POP);
+
+		return null;
+	}
+
+	@Override
+	public Void visitPrint(Statement.Print print) {
+		compile(print.expression());
+		emit(OpCode.PRINT);
+
+		return null;
+	}
+
+	@Override
+	public Void visitVariable(Statement.Variable variable) {
+		variable.initializer().ifPresentOrElse(
+			this::compile,
+			() -> emit(OpCode.NIL)
+		);
+
+		defineVariable(variable.name());
+
+		return null;
+	}
+
+	@Override
+	public Void visitBlock(Statement.Block block) {
+		beginScope();
+		block.statements().forEach(this::compile);
+		endScope();
+
+		return null;
+	}
+
+	@Override
+	public Void visitIf(Statement.If if_) {
+		compile(if_.condition());
+
+		final var thenJump = emitJump(OpCode.JUMP_IF_FALSE);
+		emit(OpCode.POP);
+		compile(if_.thenBranch());
+
+		final var elseJump = emitJump(OpCode.JUMP);
+		patchJump(thenJump);
+		adjustStack(+1);
+		emit(OpCode.POP);
+		if_.elseBranch().ifPresent(this::compile);
+
+		patchJump(elseJump);
+
+		return null;
+	}
+
+	@Override
+	public Void visitWhile(Statement.While while_) {
+		final var loopStart = current.chunk.count();
+		compile(while_.condition());
+
+		final var exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+		emit(OpCode.POP);
+		compile(while_.body());
+		emitLoop(loopStart);
+
+		patchJump(exitJump);
+		adjustStack(+1);
+		emit(OpCode.POP);
+
+		return null;
+	}
+
+	@Override
+	public Void visitFunction(Statement.Function function) {
+		if (isLocalScope()) {
+			addLocal(function.name().lexeme());
+		}
+
+		compileFunction(function, FunctionType.FUNCTION);
+
+		if (isLocalScope()) {
+			adjustStack(-1);
+		} else {
+			defineGlobal(function.name());
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitReturn(Statement.Return return_) {
+		line = return_.keyword().line();
+
+		if (return_.value().isPresent()) {
+			compile(return_.value().get());
+			emit(OpCode.RETURN);
+		} else {
+			emitReturn();
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitClass(Statement.Class class_) {
+		final var name = class_.name();
+		line = name.line();
+
+		emit(OpCode.CLASS, nameConstant(name));
+		defineVariable(name);
+
+		loadVariable(name);
+		for (final var method : class_.methods()) {
+			final var type = "init".equals(method.name().lexeme())
+				? FunctionType.INITIALIZER
+				: FunctionType.METHOD;
+
+			compileFunction(method, type);
+			emit(OpCode.METHOD, nameConstant(method.name()));
+		}
+		emit(OpCode.POP);
+
+		return null;
+	}
+
+	@Override
+	public Void visitLiteral(Expression.Literal literal) {
+		switch (literal.value()) {
+			case interpreter.grammar.Literal.Nil __ -> emit(OpCode.NIL);
+			case interpreter.grammar.Literal.Boolean(final var value) -> emit(value ? OpCode.TRUE : OpCode.FALSE);
+			default -> emit(OpCode.CONSTANT, constant(literal.constant()));
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitGrouping(Expression.Grouping grouping) {
+		compile(grouping.expression());
+
+		return null;
+	}
+
+	@Override
+	public Void visitUnary(Expression.Unary unary) {
+		compile(unary.right());
+
+		line = unary.operator().line();
+		switch (unary.operator().type()) {
+			case BANG -> emit(OpCode.NOT);
+			case MINUS -> emit(OpCode.NEGATE);
+			default -> throw new UnsupportedOperationException();
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitBinary(Expression.Binary binary) {
+		compile(binary.left());
+		compile(binary.right());
+
+		line = binary.operator().line();
+		switch (binary.operator().type()) {
+			case MINUS -> emit(OpCode.SUBTRACT);
+			case PLUS -> emit(OpCode.ADD);
+			case SLASH -> emit(OpCode.DIVIDE);
+			case STAR -> emit(OpCode.MULTIPLY);
+			case GREATER -> emit(OpCode.GREATER);
+			case GREATER_EQUAL -> emit(OpCode.GREATER_EQUAL);
+			case LESS -> emit(OpCode.LESS);
+			case LESS_EQUAL -> emit(OpCode.LESS_EQUAL);
+			case BANG_EQUAL -> {
+				emit(OpCode.EQUAL);
+				emit(OpCode.NOT);
+			}
+			case EQUAL_EQUAL -> emit(OpCode.EQUAL);
+			default -> throw new UnsupportedOperationException();
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitVariable(Expression.Variable variable) {
+		loadVariable(variable.name());
+
+		return null;
+	}
+
+	@Override
+	public Void visitAssign(Expression.Assign assign) {
+		compile(assign.value());
+
+		final var name = assign.name();
+		line = name.line();
+
+		final var local = resolveLocal(current, name.lexeme());
+		if (local != -1) {
+			emit(OpCode.SET_LOCAL, local);
+			return null;
+		}
+
+		final var upvalue = resolveUpvalue(current, name.lexeme());
+		if (upvalue != -1) {
+			emit(OpCode.SET_UPVALUE, upvalue);
+			return null;
+		}
+
+		emit(OpCode.SET_GLOBAL, nameConstant(name));
+
+		return null;
+	}
+
+	@Override
+	public Void visitLogical(Expression.Logical logical) {
+		compile(logical.left());
+
+		if (TokenType.OR.equals(logical.operator().type())) {
+			final var elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+			final var endJump = emitJump(OpCode.JUMP);
+
+			patchJump(elseJump);
+			emit(OpCode.POP);
+			compile(logical.right());
+
+			patchJump(endJump);
+		} else {
+			final var endJump = emitJump(OpCode.JUMP_IF_FALSE);
+
+			emit(OpCode.POP);
+			compile(logical.right());
+
+			patchJump(endJump);
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitCall(Expression.Call call) {
+		final var arguments = call.arguments();
+
+		if (call.callee() instanceof Expression.Get get) {
+			compile(get.object());
+
+			line = get.name().line();
+			emit(OpCode.GET_METHOD, siteConstant(get));
+
+			arguments.forEach(this::compile);
+
+			line = call.parenthesis().line();
+			emitCall(OpCode.CALL_METHOD, arguments.size(), -(arguments.size() + 1));
+		} else {
+			compile(call.callee());
+
+			arguments.forEach(this::compile);
+
+			line = call.parenthesis().line();
+			emitCall(OpCode.CALL, arguments.size(), -arguments.size());
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitGet(Expression.Get get) {
+		compile(get.object());
+
+		line = get.name().line();
+		emit(OpCode.GET_PROPERTY, siteConstant(get));
+
+		return null;
+	}
+
+	@Override
+	public Void visitSet(Expression.Set set) {
+		compile(set.object());
+
+		line = set.name().line();
+		if (!(set.object() instanceof Expression.This)) {
+			/* the object must be checked before the value is evaluated */
+			emit(OpCode.CHECK_INSTANCE);
+		}
+
+		compile(set.value());
+
+		line = set.name().line();
+		emit(OpCode.SET_PROPERTY, siteConstant(set));
+
+		return null;
+	}
+
+	@Override
+	public Void visitThis(Expression.This this_) {
+		loadVariable(this_.keyword());
+
+		return null;
+	}
+
+	private void compileFunction(Statement.Function function, FunctionType type) {
+		final var name = function.name();
+		line = name.line();
+
+		current = new FunctionState(current, type, name.lexeme(), function.parameters().size());
+		beginScope();
+
+		for (final var parameter : function.parameters()) {
+			addLocal(parameter.lexeme());
+		}
+
+		function.body().statements().forEach(this::compile);
+
+		emitReturn();
+
+		final var upvalues = current.upvalues;
+		final var compiled = endFunction();
+
+		line = name.line();
+		emit(OpCode.CLOSURE, current.chunk.addUniqueConstant(compiled));
+
+		for (final var upvalue : upvalues) {
+			emitByte(upvalue.isLocal() ? (byte) 1 : (byte) 0);
+			emitShort(upvalue.index());
+		}
+	}
+
+	private VmFunction endFunction() {
+		final var state = current;
+		current = state.enclosing;
+
+		return new VmFunction(
+			state.name,
+			state.arity,
+			state.upvalues.size(),
+			state.maxStackDepth,
+			state.chunk
+		);
+	}
+
+	private void loadVariable(Token name) {
+		line = name.line();
+
+		final var local = resolveLocal(current, name.lexeme());
+		if (local != -1) {
+			emit(OpCode.GET_LOCAL, local);
+			return;
+		}
+
+		final var upvalue = resolveUpvalue(current, name.lexeme());
+		if (upvalue != -1) {
+			emit(OpCode.GET_UPVALUE, upvalue);
+			return;
+		}
+
+		emit(OpCode.GET_GLOBAL, nameConstant(name));
+	}
+
+	private void defineVariable(Token name) {
+		if (isLocalScope()) {
+			/* the value on top of the stack becomes the local */
+			adjustStack(-1);
+			addLocal(name.lexeme());
+		} else {
+			defineGlobal(name);
+		}
+	}
+
+	private void defineGlobal(Token name) {
+		line = name.line();
+		emit(OpCode.DEFINE_GLOBAL, nameConstant(name));
+	}
+
+	private boolean isLocalScope() {
+		return current.scopeDepth > 0;
+	}
+
+	private void beginScope() {
+		++current.scopeDepth;
+	}
+
+	private void endScope() {
+		final var locals = current.locals;
+		--current.scopeDepth;
+
+		while (!locals.isEmpty() && locals.getLast().depth > current.scopeDepth) {
+			final var local = locals.removeLast();
+
+			emit(local.captured ? OpCode.CLOSE_UPVALUE : OpCode.POP);
+		}
+	}
+
+	private void addLocal(String name) {
+		current.locals.add(new Local(name, current.scopeDepth));
+		adjustStack(+1);
+	}
+
+	private int resolveLocal(FunctionState state, String name) {
+		final var locals = state.locals;
+
+		for (var index = locals.size() - 1; index >= 0; index--) {
+			if (locals.get(index).name.equals(name)) {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+	private int resolveUpvalue(FunctionState state, String name) {
+		if (state.enclosing == null) {
+			return -1;
+		}
+
+		final var local = resolveLocal(state.enclosing, name);
+		if (local != -1) {
+			state.enclosing.locals.get(local).captured = true;
+			return addUpvalue(state, local, true);
+		}
+
+		final var upvalue = resolveUpvalue(state.enclosing, name);
+		if (upvalue != -1) {
+			return addUpvalue(state, upvalue, false);
+		}
+
+		return -1;
+	}
+
+	private int addUpvalue(FunctionState state, int index, boolean isLocal) {
+		final var upvalues = state.upvalues;
+		final var upvalue = new UpvalueReference(index, isLocal);
+
+		final var existing = upvalues.indexOf(upvalue);
+		if (existing != -1) {
+			return existing;
+		}
+
+		upvalues.add(upvalue);
+		return upvalues.size() - 1;
+	}
+
+	private int constant(Object value) {
+		return checkShort(current.chunk.addConstant(value), "Too many constants in one chunk.");
+	}
+
+	private int nameConstant(Token name) {
+		final var chunk = current.chunk;
+		final var index = current.names.computeIfAbsent(name.lexeme(), (__) -> chunk.addUniqueConstant(name));
+
+		return checkShort(index, "Too many constants in one chunk.");
+	}
+
+	/**
+	 * Property instructions refer to their syntax node, which carries the name and the inline cache of the site.
+	 */
+	private int siteConstant(Expression site) {
+		return checkShort(current.chunk.addUniqueConstant(site), "Too many constants in one chunk.");
+	}
+
+	private void emitReturn() {
+		if (FunctionType.INITIALIZER.equals(current.type)) {
+			emit(OpCode.GET_LOCAL, 0);
+		} else {
+			emit(OpCode.NIL);
+		}
+
+		emit(OpCode.RETURN);
+	}
+
+	private int emitJump(byte instruction) {
+		emit(instruction);
+		emitShort(MAX_SHORT);
+
+		return current.chunk.count() - 2;
+	}
+
+	private void patchJump(int offset) {
+		final var jump = checkShort(current.chunk.count() - offset - 2, "Too much code to jump over.");
+
+		current.chunk.patch(offset, (byte) (jump >> 8));
+		current.chunk.patch(offset + 1, (byte) jump);
+	}
+
+	private void emitLoop(int loopStart) {
+		emit(OpCode.LOOP);
+
+		final var offset = checkShort(current.chunk.count() - loopStart + 2, "Loop body too large.");
+		emitShort(offset);
+	}
+
+	private void emitCall(byte instruction, int argumentCount, int stackEffect) {
+		emitByte(instruction);
+		emitByte((byte) argumentCount);
+		adjustStack(stackEffect);
+	}
+
+	private void emit(byte instruction, int operand) {
+		emit(instruction);
+		emitShort(operand);
+	}
+
+	private void emit(byte instruction) {
+		emitByte(instruction);
+		adjustStack(stackEffect(instruction));
+	}
+
+	private void emitShort(int value) {
+		emitByte((byte) (value >> 8));
+		emitByte((byte) value);
+	}
+
+	private void emitByte(byte value) {
+		current.chunk.write(value, line);
+	}
+
+	private void adjustStack(int effect) {
+		current.stackDepth += effect;
+		current.maxStackDepth = Math.max(current.maxStackDepth, current.stackDepth);
+	}
+
+	private int checkShort(int value, String message) {
+		if (value > MAX_SHORT) {
+			lox.report(line, "", message);
+		}
+
+		return value;
+	}
+
+	private static int stackEffect(byte instruction) {
+		return switch (instruction) {
+			case OpCode.CONSTANT, OpCode.NIL, OpCode.TRUE, OpCode.FALSE -> +1;
+			case OpCode.GET_LOCAL, OpCode.GET_UPVALUE, OpCode.GET_GLOBAL -> +1;
+			case OpCode.GET_METHOD, OpCode.CLOSURE, OpCode.CLASS -> +1;
+			case OpCode.POP, OpCode.DEFINE_GLOBAL, OpCode.SET_PROPERTY, OpCode.PRINT, OpCode.CLOSE_UPVALUE, OpCode.RETURN, OpCode.METHOD -> -1;
+			case OpCode.EQUAL, OpCode.GREATER, OpCode.GREATER_EQUAL, OpCode.LESS, OpCode.LESS_EQUAL -> -1;
+			case OpCode.ADD, OpCode.SUBTRACT, OpCode.MULTIPLY, OpCode.DIVIDE -> -1;
+			default -> 0;
+		};
+	}
+
+	private static final class FunctionState {
+
+		private final FunctionState enclosing;
+		private final FunctionType type;
+		private final String name;
+		private final int arity;
+
+		private final Chunk chunk = new Chunk();
+		private final List<Local> locals = new ArrayList<>();
+		private final List<UpvalueReference> upvalues = new ArrayList<>();
+		private final Map<String, Integer> names = new HashMap<>();
+
+		private int scopeDepth = 0;
+		private int stackDepth = 0;
+		private int maxStackDepth = 0;
+
+		public FunctionState(FunctionState enclosing, FunctionType type, String name, int arity) {
+			this.enclosing = enclosing;
+			this.type = type;
+			this.name = name;
+			this.arity = arity;
+
+			/* slot 0 holds the receiver for methods and the callee otherwise */
+			final var isMethod = FunctionType.METHOD.equals(type) || FunctionType.INITIALIZER.equals(type);
+			locals.add(new Local(isMethod ? "this" : "", 0));
+
+			this.stackDepth = 1;
+			this.maxStackDepth = 1;
+		}
+
+	}
+
+	private static final class Local {
+
+		private final String name;
+		private final int depth;
+		private boolean captured = false;
+
+		public Local(String name, int depth) {
+			this.name = name;
+			this.depth = depth;
+		}
+
+	}
+
+	private record UpvalueReference(
+		int index,
+		boolean isLocal
+	) {}
+
+}
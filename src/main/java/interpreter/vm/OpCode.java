@@ -0,0 +1,57 @@
+package interpreter.vm;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Instruction set of the {@link VirtualMachine}.
+ * Operands are unsigned and big-endian: constants, slots and jumps are 2 bytes, argument counts are 1 byte.
+ */
+@UtilityClass
+public class OpCode {
+
+	public static final byte CONSTANT = 0;
+	public static final byte NIL = 1;
+	public static final byte TRUE = 2;
+	public static final byte FALSE = 3;
+	public static final byte POP = 4;
+
+	public static final byte GET_LOCAL = 5;
+	public static final byte SET_LOCAL = 6;
+	public static final byte GET_UPVALUE = 7;
+	public static final byte SET_UPVALUE = 8;
+	public static final byte GET_GLOBAL = 9;
+	public static final byte DEFINE_GLOBAL = 10;
+	public static final byte SET_GLOBAL = 11;
+
+	public static final byte GET_PROPERTY = 12;
+	public static final byte SET_PROPERTY = 13;
+	public static final byte CHECK_INSTANCE = 14;
+	public static final byte GET_METHOD = 15;
+
+	public static final byte EQUAL = 16;
+	public static final byte GREATER = 17;
+	public static final byte GREATER_EQUAL = 18;
+	public static final byte LESS = 19;
+	public static final byte LESS_EQUAL = 20;
+	public static final byte ADD = 21;
+	public static final byte SUBTRACT = 22;
+	public static final byte MULTIPLY = 23;
+	public static final byte DIVIDE = 24;
+	public static final byte NOT = 25;
+	public static final byte NEGATE = 26;
+
+	public static final byte PRINT = 27;
+	public static final byte JUMP = 28;
+	public static final byte JUMP_IF_FALSE = 29;
+	public static final byte LOOP = 30;
+
+	public static final byte CALL = 31;
+	public static final byte CALL_METHOD = 32;
+	public static final byte CLOSURE = 33;
+	public static final byte CLOSE_UPVALUE = 34;
+	public static final byte RETURN = 35;
+
+	public static final byte CLASS = 36;
+	public static final byte METHOD = 37;
+
+}
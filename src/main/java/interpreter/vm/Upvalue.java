@@ -0,0 +1,52 @@
+package interpreter.vm;
+
+import interpreter.evaluating.value.LoxValue;
+
+/**
+ * Variable captured by a closure.
+ * While open, it refers to a slot of the virtual machine stack; once that slot goes out of scope, the value is moved in.
+ */
+public final class Upvalue {
+
+	private static final int CLOSED = -1;
+
+	private int slot;
+	private LoxValue value;
+	private Upvalue next;
+
+	public Upvalue(int slot, Upvalue next) {
+		this.slot = slot;
+		this.next = next;
+	}
+
+	public boolean isOpen() {
+		return slot != CLOSED;
+	}
+
+	public void close(LoxValue value) {
+		this.slot = CLOSED;
+		this.value = value;
+		this.next = null;
+	}
+
+	public int slot() {
+		return slot;
+	}
+
+	public LoxValue value() {
+		return value;
+	}
+
+	public void value(LoxValue value) {
+		this.value = value;
+	}
+
+	public Upvalue next() {
+		return next;
+	}
+
+	public void next(Upvalue next) {
+		this.next = next;
+	}
+
+}
@@ -0,0 +1,525 @@
+package interpreter.vm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import interpreter.Lox;
+import interpreter.evaluating.GlobalEnvironment;
+import interpreter.evaluating.RuntimeError;
+import interpreter.evaluating.SimpleNativeFunction;
+import interpreter.evaluating.value.LoxBoolean;
+import interpreter.evaluating.value.LoxClass;
+import interpreter.evaluating.value.LoxInstance;
+import interpreter.evaluating.value.LoxNil;
+import interpreter.evaluating.value.LoxNumber;
+import interpreter.evaluating.value.LoxString;
+import interpreter.evaluating.value.LoxValue;
+import interpreter.grammar.Token;
+import interpreter.parser.Expression;
+import lombok.NonNull;
+
+/**
+ * Stack-based virtual machine executing the bytecode produced by the {@link Compiler}.
+ */
+public class VirtualMachine {
+
+	private static final int FRAMES_MAX = 1 << 16;
+
+	private final Lox lox;
+	private final GlobalEnvironment globals = new GlobalEnvironment();
+
+	private LoxValue[] stack = new LoxValue[256];
+	private int stackTop = 0;
+
+	private CallFrame[] frames = new CallFrame[0];
+	private int frameCount = 0;
+
+	private Upvalue openUpvalues = null;
+
+	public VirtualMachine(
+		@NonNull Lox lox
+	) {
+		this.lox = lox;
+	}
+
+	public void interpret(VmFunction script) {
+		final var closure = new VmClosure(script, new Upvalue[0]);
+
+		push(closure);
+		callClosure(closure, 0, 0);
+
+		run();
+	}
+
+	private void run() {
+		var frame = frames[frameCount - 1];
+		var code = frame.closure.function().chunk().code();
+		var constants = frame.closure.function().chunk().constants();
+		var ip = frame.ip;
+
+		try {
+			while (true) {
+				switch (code[ip++]) {
+					case OpCode.CONSTANT -> {
+						push((LoxValue) constants[readShort(code, ip)]);
+						ip += 2;
+					}
+					case OpCode.NIL -> push(LoxNil.INSTANCE);
+					case OpCode.TRUE -> push(LoxBoolean.TRUE);
+					case OpCode.FALSE -> push(LoxBoolean.FALSE);
+					case OpCode.POP -> pop();
+
+					case OpCode.GET_LOCAL -> {
+						push(stack[frame.base + readShort(code, ip)]);
+						ip += 2;
+					}
+					case OpCode.SET_LOCAL -> {
+						stack[frame.base + readShort(code, ip)] = peek();
+						ip += 2;
+					}
+					case OpCode.GET_UPVALUE -> {
+						final var upvalue = frame.closure.upvalues()[readShort(code, ip)];
+						ip += 2;
+
+						push(upvalue.isOpen() ? stack[upvalue.slot()] : upvalue.value());
+					}
+					case OpCode.SET_UPVALUE -> {
+						final var upvalue = frame.closure.upvalues()[readShort(code, ip)];
+						ip += 2;
+
+						if (upvalue.isOpen()) {
+							stack[upvalue.slot()] = peek();
+						} else {
+							upvalue.value(peek());
+						}
+					}
+					case OpCode.GET_GLOBAL -> {
+						final var name = (Token) constants[readShort(code, ip)];
+						ip += 2;
+
+						push(globals.get(name));
+					}
+					case OpCode.DEFINE_GLOBAL -> {
+						final var name = (Token) constants[readShort(code, ip)];
+						ip += 2;
+
+						globals.define(name.lexeme(), pop());
+					}
+					case OpCode.SET_GLOBAL -> {
+						final var name = (Token) constants[readShort(code, ip)];
+						ip += 2;
+
+						globals.assign(name, peek());
+					}
+
+					case OpCode.GET_PROPERTY -> {
+						final var get = (Expression.Get) constants[readShort(code, ip)];
+						ip += 2;
+
+						if (!(peek() instanceof LoxInstance instance)) {
+							throw error("Only instances have properties.");
+						}
+
+						stack[stackTop - 1] = instance.get(get.name(), get.cache());
+					}
+					case OpCode.SET_PROPERTY -> {
+						final var set = (Expression.Set) constants[readShort(code, ip)];
+						ip += 2;
+
+						final var value = pop();
+						if (!(pop() instanceof LoxInstance instance)) {
+							throw error("Only instances have fields.");
+						}
+
+						instance.set(set.name(), value, set.cache());
+						push(value);
+					}
+					case OpCode.CHECK_INSTANCE -> {
+						if (!(peek() instanceof LoxInstance)) {
+							throw error("Only instances have fields.");
+						}
+					}
+					case OpCode.GET_METHOD -> {
+						final var get = (Expression.Get) constants[readShort(code, ip)];
+						ip += 2;
+
+						getMethod(get);
+					}
+
+					case OpCode.EQUAL -> {
+						final var right = pop();
+						final var left = pop();
+
+						push(LoxBoolean.valueOf(left.equals(right)));
+					}
+					case OpCode.GREATER -> {
+						final var right = pop();
+						final var left = pop();
+
+						if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+							push(LoxBoolean.valueOf(leftValue > rightValue));
+						} else {
+							throw error("Operands must be numbers.");
+						}
+					}
+					case OpCode.GREATER_EQUAL -> {
+						final var right = pop();
+						final var left = pop();
+
+						if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+							push(LoxBoolean.valueOf(leftValue >= rightValue));
+						} else {
+							throw error("Operands must be numbers.");
+						}
+					}
+					case OpCode.LESS -> {
+						final var right = pop();
+						final var left = pop();
+
+						if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+							push(LoxBoolean.valueOf(leftValue < rightValue));
+						} else {
+							throw error("Operands must be numbers.");
+						}
+					}
+					case OpCode.LESS_EQUAL -> {
+						final var right = pop();
+						final var left = pop();
+
+						if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+							push(LoxBoolean.valueOf(leftValue <= rightValue));
+						} else {
+							throw error("Operands must be numbers.");
+						}
+					}
+					case OpCode.ADD -> {
+						final var right = pop();
+						final var left = pop();
+
+						if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+							push(LoxNumber.valueOf(leftValue + rightValue));
+						} else if (left instanceof LoxString(final var leftValue) && right instanceof LoxString(final var rightValue)) {
+							push(new LoxString(leftValue + rightValue));
+						} else {
+							throw error("Operands must be two numbers or two strings.");
+						}
+					}
+					case OpCode.SUBTRACT -> {
+						final var right = pop();
+						final var left = pop();
+
+						if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+							push(LoxNumber.valueOf(leftValue - rightValue));
+						} else {
+							throw error("Operands must be numbers.");
+						}
+					}
+					case OpCode.MULTIPLY -> {
+						final var right = pop();
+						final var left = pop();
+
+						if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+							push(LoxNumber.valueOf(leftValue * rightValue));
+						} else {
+							throw error("Operands must be numbers.");
+						}
+					}
+					case OpCode.DIVIDE -> {
+						final var right = pop();
+						final var left = pop();
+
+						if (left instanceof LoxNumber(final var leftValue) && right instanceof LoxNumber(final var rightValue)) {
+							push(LoxNumber.valueOf(leftValue / rightValue));
+						} else {
+							throw error("Operands must be numbers.");
+						}
+					}
+					case OpCode.NOT -> push(LoxBoolean.valueOf(isFalsey(pop())));
+					case OpCode.NEGATE -> {
+						if (peek() instanceof LoxNumber(final var value)) {
+							stack[stackTop - 1] = LoxNumber.valueOf(-value);
+						} else {
+							throw error("Operand must be a number.");
+						}
+					}
+
+					case OpCode.PRINT -> System.out.println(pop().format());
+					case OpCode.JUMP -> ip += readShort(code, ip) + 2;
+					case OpCode.JUMP_IF_FALSE -> {
+						if (isFalsey(peek())) {
+							ip += readShort(code, ip);
+						}
+
+						ip += 2;
+					}
+					case OpCode.LOOP -> ip -= readShort(code, ip) - 2;
+
+					case OpCode.CALL, OpCode.CALL_METHOD -> {
+						final var isMethod = code[ip - 1] == OpCode.CALL_METHOD;
+						final var argumentCount = code[ip++] & 0xff;
+						frame.ip = ip;
+
+						if (isMethod) {
+							callMethod(argumentCount);
+						} else {
+							callValue(stack[stackTop - argumentCount - 1], argumentCount, stackTop - argumentCount - 1);
+						}
+
+						frame = frames[frameCount - 1];
+						code = frame.closure.function().chunk().code();
+						constants = frame.closure.function().chunk().constants();
+						ip = frame.ip;
+					}
+					case OpCode.CLOSURE -> {
+						final var function = (VmFunction) constants[readShort(code, ip)];
+						ip += 2;
+
+						final var upvalues = new Upvalue[function.upvalueCount()];
+						for (var index = 0; index < upvalues.length; index++) {
+							final var isLocal = code[ip++] == 1;
+							final var slot = readShort(code, ip);
+							ip += 2;
+
+							upvalues[index] = isLocal
+								? captureUpvalue(frame.base + slot)
+								: frame.closure.upvalues()[slot];
+						}
+
+						push(new VmClosure(function, upvalues));
+					}
+					case OpCode.CLOSE_UPVALUE -> {
+						closeUpvalues(stackTop - 1);
+						--stackTop;
+					}
+					case OpCode.RETURN -> {
+						final var result = pop();
+						closeUpvalues(frame.base);
+
+						--frameCount;
+						if (frameCount == 0) {
+							stackTop = 0;
+							return;
+						}
+
+						Arrays.fill(stack, frame.returnSlot + 1, stackTop, null);
+						stackTop = frame.returnSlot;
+						push(result);
+
+						frame = frames[frameCount - 1];
+						code = frame.closure.function().chunk().code();
+						constants = frame.closure.function().chunk().constants();
+						ip = frame.ip;
+					}
+
+					case OpCode.CLASS -> {
+						final var name = (Token) constants[readShort(code, ip)];
+						ip += 2;
+
+						push(new LoxClass(name.lexeme(), new HashMap<>()));
+					}
+					case OpCode.METHOD -> {
+						final var name = (Token) constants[readShort(code, ip)];
+						ip += 2;
+
+						final var method = (VmClosure) pop();
+						final var klass = (LoxClass) peek();
+
+						klass.methods().put(name.lexeme(), method);
+					}
+
+					default -> throw new IllegalStateException("unknown opcode: " + code[ip - 1]);
+				}
+			}
+		} catch (RuntimeError error) {
+			final var line = frame.closure.function().chunk().line(ip - 1);
+
+			lox.reportRuntime(line, error.getMessage());
+			resetStack();
+		}
+	}
+
+	private void getMethod(Expression.Get get) {
+		if (!(peek() instanceof LoxInstance instance)) {
+			throw error("Only instances have properties.");
+		}
+
+		final var name = get.name();
+		final var field = instance.field(name.lexeme(), get.cache());
+		if (field != null) {
+			/* no receiver, the callee is shifted down by CALL_METHOD */
+			stack[stackTop - 1] = null;
+			push(field);
+			return;
+		}
+
+		final var method = instance.klass().findMethod(name.lexeme());
+		if (method == null) {
+			throw new RuntimeError("Undefined property '%s'.".formatted(name.lexeme()), name);
+		}
+
+		stack[stackTop - 1] = method;
+		push(instance);
+	}
+
+	private void callMethod(int argumentCount) {
+		final var receiverSlot = stackTop - argumentCount - 1;
+		final var methodSlot = receiverSlot - 1;
+
+		final var method = stack[methodSlot];
+		if (method == null) {
+			System.arraycopy(stack, receiverSlot, stack, methodSlot, argumentCount + 1);
+			stack[--stackTop] = null;
+
+			callValue(stack[methodSlot], argumentCount, methodSlot);
+			return;
+		}
+
+		callClosure((VmClosure) method, argumentCount, receiverSlot);
+		frames[frameCount - 1].returnSlot = methodSlot;
+	}
+
+	private void callValue(LoxValue callee, int argumentCount, int calleeSlot) {
+		switch (callee) {
+			case VmClosure closure -> callClosure(closure, argumentCount, calleeSlot);
+
+			case VmBoundMethod bound -> {
+				stack[calleeSlot] = bound.receiver();
+				callClosure(bound.method(), argumentCount, calleeSlot);
+			}
+
+			case LoxClass klass -> {
+				stack[calleeSlot] = new LoxInstance(klass);
+
+				final var initializer = klass.findMethod("init");
+				if (initializer != null) {
+					callClosure((VmClosure) initializer, argumentCount, calleeSlot);
+				} else if (argumentCount != 0) {
+					throw error("Expected 0 arguments but got %s.".formatted(argumentCount));
+				}
+			}
+
+			case SimpleNativeFunction function -> {
+				checkArity(function.arity(), argumentCount);
+
+				final var arguments = Arrays.copyOfRange(stack, calleeSlot + 1, stackTop);
+				final var result = function.call(arguments);
+
+				Arrays.fill(stack, calleeSlot, stackTop, null);
+				stackTop = calleeSlot;
+				push(result);
+			}
+
+			default -> throw error("Can only call functions and classes.");
+		}
+	}
+
+	private void callClosure(VmClosure closure, int argumentCount, int base) {
+		final var function = closure.function();
+		checkArity(function.arity(), argumentCount);
+
+		if (frameCount == FRAMES_MAX) {
+			throw error("Stack overflow.");
+		}
+
+		if (frameCount == frames.length) {
+			growFrames();
+		}
+
+		final var required = base + function.maxStack();
+		if (required > stack.length) {
+			stack = Arrays.copyOf(stack, Math.max(required, stack.length * 2));
+		}
+
+		final var frame = frames[frameCount++];
+		frame.closure = closure;
+		frame.ip = 0;
+		frame.base = base;
+		frame.returnSlot = base;
+	}
+
+	private void checkArity(int arity, int argumentCount) {
+		if (arity != argumentCount) {
+			throw error("Expected %d arguments but got %s.".formatted(arity, argumentCount));
+		}
+	}
+
+	private void growFrames() {
+		final var length = frames.length;
+		frames = Arrays.copyOf(frames, Math.max(8, length * 2));
+
+		for (var index = length; index < frames.length; index++) {
+			frames[index] = new CallFrame();
+		}
+	}
+
+	private Upvalue captureUpvalue(int slot) {
+		Upvalue previous = null;
+		var upvalue = openUpvalues;
+
+		while (upvalue != null && upvalue.slot() > slot) {
+			previous = upvalue;
+			upvalue = upvalue.next();
+		}
+
+		if (upvalue != null && upvalue.slot() == slot) {
+			return upvalue;
+		}
+
+		final var created = new Upvalue(slot, upvalue);
+		if (previous == null) {
+			openUpvalues = created;
+		} else {
+			previous.next(created);
+		}
+
+		return created;
+	}
+
+	private void closeUpvalues(int last) {
+		while (openUpvalues != null && openUpvalues.slot() >= last) {
+			final var upvalue = openUpvalues;
+			openUpvalues = upvalue.next();
+
+			upvalue.close(stack[upvalue.slot()]);
+		}
+	}
+
+	private void resetStack() {
+		Arrays.fill(stack, null);
+		stackTop = 0;
+		frameCount = 0;
+		openUpvalues = null;
+	}
+
+	private void push(LoxValue value) {
+		stack[stackTop++] = value;
+	}
+
+	private LoxValue pop() {
+		final var value = stack[--stackTop];
+		stack[stackTop] = null;
+
+		return value;
+	}
+
+	private LoxValue peek() {
+		return stack[stackTop - 1];
+	}
+
+	private static int readShort(byte[] code, int offset) {
+		return ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+	}
+
+	private static boolean isFalsey(LoxValue value) {
+		return switch (value) {
+			case LoxNil __ -> true;
+			case LoxBoolean boolean_ -> !boolean_.value();
+			default -> false;
+		};
+	}
+
+	private static RuntimeError error(String message) {
+		return new RuntimeError(message, null);
+	}
+
+}
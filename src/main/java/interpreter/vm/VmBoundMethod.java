@@ -0,0 +1,42 @@
+package interpreter.vm;
+
+import interpreter.evaluating.value.LoxCallable;
+import interpreter.evaluating.value.LoxInstance;
+
+/**
+ * Method read as a value, only materialized when it escapes a call site.
+ */
+public record VmBoundMethod(
+	LoxInstance receiver,
+	VmClosure method
+) implements LoxCallable {
+
+	@Override
+	public String name() {
+		return method.name();
+	}
+
+	@Override
+	public int arity() {
+		return method.arity();
+	}
+
+	/**
+	 * Every read of a method produces a distinct value, like a closure.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		return this == other;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+
+	@Override
+	public String format() {
+		return method.format();
+	}
+
+}
@@ -0,0 +1,31 @@
+package interpreter.vm;
+
+import interpreter.evaluating.value.LoxInstance;
+import interpreter.evaluating.value.LoxMethod;
+
+public record VmClosure(
+	VmFunction function,
+	Upvalue[] upvalues
+) implements LoxMethod {
+
+	@Override
+	public String name() {
+		return function.name();
+	}
+
+	@Override
+	public int arity() {
+		return function.arity();
+	}
+
+	@Override
+	public VmBoundMethod bind(LoxInstance instance) {
+		return new VmBoundMethod(instance, this);
+	}
+
+	@Override
+	public String format() {
+		return "<fn %s>".formatted(name());
+	}
+
+}
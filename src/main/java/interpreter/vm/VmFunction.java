@@ -0,0 +1,12 @@
+package interpreter.vm;
+
+/**
+ * Compiled prototype of a function, shared by every closure created from it.
+ */
+public record VmFunction(
+	String name,
+	int arity,
+	int upvalueCount,
+	int maxStack,
+	Chunk chunk
+) {}
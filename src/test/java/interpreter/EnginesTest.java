@@ -0,0 +1,83 @@
+package interpreter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+/**
+ * Every engine must print the same output and report the same errors as the tree-walker on the scripts of the corpus.
+ */
+class EnginesTest {
+
+	/** scripts of these chapters are not run but scanned, parsed or evaluated */
+	private static final List<String> OTHER_COMMANDS = List.of("scanning", "parsing expressions", "evaluating expressions");
+
+	@TestFactory
+	Stream<DynamicTest> corpus() throws IOException {
+		try (final var paths = Files.walk(Path.of("tests"))) {
+			final var scripts = paths
+				.filter((path) -> path.toString().endsWith(".lox"))
+				.filter((path) -> !OTHER_COMMANDS.contains(path.getParent().getFileName().toString()))
+				.sorted()
+				.toList();
+
+			assertThat(scripts).isNotEmpty();
+
+			return scripts.stream()
+				.filter((path) -> !read(path).contains("clock"))
+				.map((path) -> DynamicTest.dynamicTest(path.toString(), () -> assertSameOutput(Files.readAllBytes(path))));
+		}
+	}
+
+	private static void assertSameOutput(byte[] source) {
+		final var expected = run(source, (lox, content) -> Main.run(lox, content, "tree", false));
+
+		assertThat(run(source, (lox, content) -> Main.run(lox, content, "closure", false))).as("closure").isEqualTo(expected);
+		assertThat(run(source, (lox, content) -> Main.run(lox, content, "vm", false))).as("vm").isEqualTo(expected);
+		assertThat(run(source, Main::runFlat)).as("flat").isEqualTo(expected);
+	}
+
+	/**
+	 * @return the output and the errors of the script, followed by how it ended
+	 */
+	private static String run(byte[] source, BiConsumer<Lox, ByteBuffer> engine) {
+		final var output = new ByteArrayOutputStream();
+		final var out = System.out;
+		final var err = System.err;
+
+		final var stream = new PrintStream(output, true, StandardCharsets.UTF_8);
+		System.setOut(stream);
+		System.setErr(stream);
+
+		try {
+			final var lox = new Lox();
+			engine.accept(lox, ByteBuffer.wrap(source));
+
+			return "%s%nhadError=%s hadRuntimeError=%s".formatted(output.toString(StandardCharsets.UTF_8), lox.hadError(), lox.hadRuntimeError());
+		} finally {
+			System.setOut(out);
+			System.setErr(err);
+		}
+	}
+
+	private static String read(Path path) {
+		try {
+			return Files.readString(path);
+		} catch (IOException exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+}
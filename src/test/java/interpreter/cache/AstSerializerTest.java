@@ -0,0 +1,157 @@
+package interpreter.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import interpreter.Lox;
+import interpreter.evaluating.Resolver;
+import interpreter.grammar.Scanner;
+import interpreter.optimizer.Optimizer;
+import interpreter.parser.Parser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AstSerializerTest {
+
+	private static final String SOURCE = """
+		class Counter {
+		  init(start) {
+		    this.count = start;
+		  }
+
+		  increment() {
+		    this.count = this.count + 1;
+		    return this;
+		  }
+		}
+
+		fun makeAdder(n) {
+		  fun add(x) { return x + n; }
+		  return add;
+		}
+
+		var counter = Counter(-1.5);
+		var i = 0;
+		while (i < 3 and !false) {
+		  counter.increment();
+		  i = i + 1;
+		}
+
+		if (counter.count >= 1 or nil) print "café " + "ok"; else print (1 - 2) * 3 / 4;
+		{
+		  var local = makeAdder(2);
+		  print local(counter.count) == 3.5;
+		}
+		""";
+
+	@Test
+	void roundTrip() {
+		final var entry = AstSerializer.write(compile(SOURCE));
+
+		final var script = AstSerializer.read(ByteBuffer.wrap(entry));
+
+		assertThat(script).isPresent();
+		assertThat(AstSerializer.write(script.get())).isEqualTo(entry);
+	}
+
+	@Test
+	void damagedByteIsRejected() {
+		final var entry = AstSerializer.write(compile(SOURCE));
+
+		for (var index = 0; index < entry.length; index++) {
+			final var damaged = entry.clone();
+			damaged[index] ^= 0x10;
+
+			assertThat(read(damaged)).as("byte %d", index).isEmpty();
+		}
+	}
+
+	@Test
+	void truncatedEntryIsRejected() {
+		final var entry = AstSerializer.write(compile(SOURCE));
+
+		for (var length = 0; length < entry.length; length++) {
+			assertThat(read(Arrays.copyOf(entry, length))).as("length %d", length).isEmpty();
+		}
+	}
+
+	@Test
+	void countBeyondEntryIsRejected() {
+		/* parameters of the frame of the script, with a valid checksum so that only the count is wrong */
+		final var huge = entry(0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+		final var negative = entry(0xFF, 0xFF, 0xFF, 0xFF, 0x0F);
+
+		assertThatThrownBy(() -> AstSerializer.read(ByteBuffer.wrap(huge))).isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> AstSerializer.read(ByteBuffer.wrap(negative))).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void damagedEntryIsMiss(@TempDir Path directory) throws IOException {
+		final var cache = new AstCache(directory);
+		final var hash = cache.hash(ByteBuffer.wrap(SOURCE.getBytes(StandardCharsets.UTF_8)));
+
+		cache.store(hash, compile(SOURCE));
+		assertThat(cache.load(hash)).isPresent();
+
+		final var path = directory.resolve(hash + ".ast");
+		final var entry = Files.readAllBytes(path);
+		entry[entry.length / 2] ^= 0x01;
+		Files.write(path, entry);
+
+		assertThat(cache.load(hash)).isEmpty();
+	}
+
+	/**
+	 * @return the script read, or nothing if it was rejected either way
+	 */
+	static Optional<AstCache.Script> read(byte[] entry) {
+		try {
+			return AstSerializer.read(ByteBuffer.wrap(entry));
+		} catch (RuntimeException __) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * @return an entry with the header of the current version and the checksum of the payload
+	 */
+	static byte[] entry(int... payload) {
+		final var bytes = new byte[payload.length];
+		for (var index = 0; index < payload.length; index++) {
+			bytes[index] = (byte) payload[index];
+		}
+
+		final var crc = new CRC32();
+		crc.update(bytes);
+
+		final var header = ByteBuffer.wrap(AstSerializer.write(compile(""))).limit(5);
+
+		return ByteBuffer.allocate(5 + 4 + bytes.length)
+			.put(header)
+			.putInt((int) crc.getValue())
+			.put(bytes)
+			.array();
+	}
+
+	static AstCache.Script compile(String source) {
+		final var lox = new Lox();
+
+		final var statements = new Parser(lox, new Scanner(lox, source).scanTokens()).parse();
+		final var frame = new Resolver(lox).resolveScript(statements);
+		final var program = new Optimizer(lox).optimize(statements);
+
+		assertThat(lox.hadError()).isFalse();
+
+		return new AstCache.Script(program, frame);
+	}
+
+}
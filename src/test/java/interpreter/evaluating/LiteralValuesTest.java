@@ -0,0 +1,49 @@
+package interpreter.evaluating;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import interpreter.Lox;
+import interpreter.evaluating.value.LoxNumber;
+import interpreter.grammar.Scanner;
+import interpreter.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+class LiteralValuesTest {
+
+	@Test
+	void literalEvaluatesToTheSameValue() {
+		final var lox = new Lox();
+		final var interpreter = new Interpreter(lox);
+
+		for (final var source : new String[] {"\"abc\"", "12.5", "100000", "true", "nil"}) {
+			final var literal = new Parser(lox, new Scanner(lox, source).scanTokens()).parseExpression().orElseThrow();
+
+			assertThat(interpreter.evaluate(literal)).as(source).isSameAs(interpreter.evaluate(literal));
+		}
+
+		assertThat(lox.hadError()).isFalse();
+	}
+
+	@Test
+	void smallIntegersAreShared() {
+		assertThat(LoxNumber.valueOf(-128)).isSameAs(LoxNumber.valueOf(-128.0));
+		assertThat(LoxNumber.valueOf(0)).isSameAs(LoxNumber.valueOf(0));
+		assertThat(LoxNumber.valueOf(1023)).isSameAs(LoxNumber.valueOf(1023));
+	}
+
+	@Test
+	void otherNumbersAreNotShared() {
+		assertThat(LoxNumber.valueOf(-129)).isNotSameAs(LoxNumber.valueOf(-129));
+		assertThat(LoxNumber.valueOf(1024)).isNotSameAs(LoxNumber.valueOf(1024));
+		assertThat(LoxNumber.valueOf(0.5).value()).isEqualTo(0.5);
+	}
+
+	@Test
+	void negativeZeroKeepsItsSign() {
+		final var negativeZero = LoxNumber.valueOf(-0.0);
+
+		assertThat(negativeZero).isNotSameAs(LoxNumber.valueOf(0));
+		assertThat(Double.doubleToRawLongBits(negativeZero.value())).isEqualTo(Double.doubleToRawLongBits(-0.0));
+	}
+
+}
@@ -0,0 +1,53 @@
+package interpreter.evaluating.value;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ShapeTest {
+
+	@Test
+	void fieldsAddedInTheSameOrderShareTheShape() {
+		final var root = Shape.root();
+		final var shape = root.withField("x").withField("y");
+
+		assertThat(root.withField("x").withField("y")).isSameAs(shape);
+		assertThat(root.withField("y").withField("x")).isNotSameAs(shape);
+
+		assertThat(shape.size()).isEqualTo(2);
+		assertThat(shape.slotOf("x")).isZero();
+		assertThat(shape.slotOf("y")).isEqualTo(1);
+		assertThat(shape.slotOf("z")).isEqualTo(-1);
+		assertThat(root.slotOf("x")).isEqualTo(-1);
+	}
+
+	@Test
+	void siteReadsFieldsOfSeveralClasses() {
+		final var first = new LoxInstance(new LoxClass("A", Map.of()));
+		final var second = new LoxInstance(new LoxClass("B", Map.of()));
+		final var cache = new PropertyCache();
+
+		first.set("x", LoxNil.INSTANCE, cache);
+		second.set("x", LoxNil.INSTANCE, cache);
+
+		assertThat(first.field("x", cache)).isSameAs(LoxNil.INSTANCE);
+		assertThat(second.field("x", cache)).isSameAs(LoxNil.INSTANCE);
+		assertThat(first.field("y", new PropertyCache())).isNull();
+	}
+
+	@Test
+	void cacheKeepsTheLatestShapes() {
+		final var cache = new PropertyCache();
+
+		for (var index = 0; index < 10; index++) {
+			final var shape = Shape.root().withField("x");
+
+			assertThat(cache.slotOf(shape, "x")).isZero();
+			assertThat(cache.slotOf(shape, "x")).isZero();
+			assertThat(cache.withField(shape, "y")).isSameAs(shape.withField("y"));
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package interpreter.grammar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import interpreter.Lox;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The chunks of the parallel scanner are much smaller than the source here, so most tokens and strings end up near a split.
+ */
+class ParallelScannerTest {
+
+	private static final String[] FRAGMENTS = {
+		"var x = 1;\n",
+		"print \"one\";\n",
+		"\"multi\nline\nstring\"",
+		"\"",
+		"// comment with a \" quote\n",
+		"//",
+		"\n",
+		"\r\n",
+		"\t",
+		" ",
+		"café",
+		"Ã",
+		"@",
+		"123.45",
+		".5",
+		"{ }",
+		"class A { init() { this.a = nil; } }\n",
+		"a != b == c <= d >= e",
+	};
+
+	@Test
+	void corpus() throws IOException {
+		final var corpus = new ByteArrayOutputStream();
+
+		try (final var paths = Files.walk(Path.of("tests"))) {
+			for (final var path : paths.filter((path) -> path.toString().endsWith(".lox")).sorted().toList()) {
+				corpus.writeBytes(Files.readAllBytes(path));
+				corpus.write('\n');
+			}
+		}
+
+		assertSameAsSequential(corpus.toByteArray());
+	}
+
+	@Test
+	void randomSources() {
+		for (var seed = 0; seed < 500; seed++) {
+			final var random = new Random(seed);
+			final var source = new ByteArrayOutputStream();
+
+			final var count = random.nextInt(400);
+			for (var index = 0; index < count; index++) {
+				final var fragment = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+
+				if (fragment.equals("Ã")) {
+					/* lead byte without its continuation byte */
+					source.write(0xC3);
+				} else {
+					source.writeBytes(fragment.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+
+			assertSameAsSequential(source.toByteArray());
+		}
+	}
+
+	@Test
+	void stringSpanningEveryChunk() {
+		final var source = "print \"" + "line\n".repeat(10_000) + "\";\nprint \"after\";\n";
+
+		assertSameAsSequential(source.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void unterminatedStringAcrossChunks() {
+		final var source = "var a = 1;\n".repeat(1_000) + "print \"" + "open\n".repeat(1_000);
+
+		assertSameAsSequential(source.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void assertSameAsSequential(byte[] source) {
+		final var sequential = scan(source, (lox) -> new Scanner(lox, ByteBuffer.wrap(source)).scanTokens());
+		final var parallel = scan(source, (lox) -> new ParallelScanner(lox, ByteBuffer.wrap(source)).scanTokens());
+
+		assertThat(parallel).isEqualTo(sequential);
+	}
+
+	/**
+	 * @return every token with its line, followed by the errors reported
+	 */
+	private static List<String> scan(byte[] source, Function<Lox, TokenBuffer> scanner) {
+		final var errors = new ByteArrayOutputStream();
+		final var err = System.err;
+		System.setErr(new PrintStream(errors, true, StandardCharsets.UTF_8));
+
+		try {
+			final var lox = new Lox();
+			final var tokens = scanner.apply(lox);
+
+			final var lines = new ArrayList<String>();
+			for (var index = 0; index < tokens.size(); index++) {
+				final var builder = new StringBuilder();
+				tokens.format(index, builder);
+
+				lines.add(builder.append(" @").append(tokens.line(index)).toString());
+			}
+
+			lines.add(errors.toString(StandardCharsets.UTF_8));
+			lines.add("hadError=" + lox.hadError());
+
+			return lines;
+		} finally {
+			System.setErr(err);
+		}
+	}
+
+}
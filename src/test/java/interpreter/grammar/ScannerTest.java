@@ -0,0 +1,131 @@
+package interpreter.grammar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import interpreter.Lox;
+import org.junit.jupiter.api.Test;
+
+class ScannerTest {
+
+	@Test
+	void multiByteIdentifier() {
+		final var lox = new Lox();
+
+		assertThat(scan(lox, "var café = 1;".getBytes(StandardCharsets.UTF_8))).containsExactly(
+			"VAR var null",
+			"IDENTIFIER café null",
+			"EQUAL = null",
+			"NUMBER 1 1.0",
+			"SEMICOLON ; null",
+			"EOF  null"
+		);
+		assertThat(lox.hadError()).isFalse();
+	}
+
+	@Test
+	void truncatedSequenceAtEndOfFile() {
+		final var lox = new Lox();
+
+		assertThat(scan(lox, bytes("abc", 0xC3))).containsExactly(
+			"IDENTIFIER abc null",
+			"EOF  null"
+		);
+		assertThat(lox.hadError()).isTrue();
+	}
+
+	@Test
+	void truncatedSequenceEndingIdentifier() {
+		final var lox = new Lox();
+
+		assertThat(scan(lox, bytes("var caf", 0xC3, 0xA9, 0xE2, 0x82))).containsExactly(
+			"VAR var null",
+			"IDENTIFIER café null",
+			"EOF  null"
+		);
+		assertThat(lox.hadError()).isTrue();
+	}
+
+	@Test
+	void leadByteWithoutContinuationBytes() {
+		final var lox = new Lox();
+
+		assertThat(scan(lox, bytes("print ", 0xF0, "abc;"))).containsExactly(
+			"PRINT print null",
+			"IDENTIFIER abc null",
+			"SEMICOLON ; null",
+			"EOF  null"
+		);
+		assertThat(lox.hadError()).isTrue();
+	}
+
+	@Test
+	void truncatedSequenceInsideIdentifier() {
+		final var lox = new Lox();
+
+		assertThat(scan(lox, bytes("var a", 0xC3, " = 1;\nprint a;"))).containsExactly(
+			"VAR var null",
+			"IDENTIFIER a null",
+			"EQUAL = null",
+			"NUMBER 1 1.0",
+			"SEMICOLON ; null",
+			"PRINT print null",
+			"IDENTIFIER a null",
+			"SEMICOLON ; null",
+			"EOF  null"
+		);
+		assertThat(lox.hadError()).isTrue();
+	}
+
+	@Test
+	void continuationByteWithoutLeadByte() {
+		final var lox = new Lox();
+
+		assertThat(scan(lox, bytes("1", 0x80, "2"))).containsExactly(
+			"NUMBER 1 1.0",
+			"NUMBER 2 2.0",
+			"EOF  null"
+		);
+		assertThat(lox.hadError()).isTrue();
+	}
+
+	static List<String> scan(Lox lox, byte[] source) {
+		return format(new Scanner(lox, ByteBuffer.wrap(source)).scanTokens());
+	}
+
+	static List<String> format(TokenBuffer tokens) {
+		final var lines = new ArrayList<String>();
+
+		for (var index = 0; index < tokens.size(); index++) {
+			final var builder = new StringBuilder();
+			tokens.format(index, builder);
+
+			lines.add(builder.toString());
+		}
+
+		return lines;
+	}
+
+	/**
+	 * @param parts strings encoded in UTF-8, or single bytes
+	 */
+	private static byte[] bytes(Object... parts) {
+		final var output = new ByteArrayOutputStream();
+
+		for (final var part : parts) {
+			if (part instanceof String string) {
+				output.writeBytes(string.getBytes(StandardCharsets.UTF_8));
+			} else {
+				output.write((Integer) part);
+			}
+		}
+
+		return output.toByteArray();
+	}
+
+}
@@ -0,0 +1,102 @@
+package interpreter.grammar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SwarTest {
+
+	private static final char[] PATTERNS = {'\n', '"', ' ', '\t', '\r'};
+
+	@Test
+	void matchesEveryByteEqualToThePattern() {
+		final var random = new Random(42);
+
+		for (var iteration = 0; iteration < 100_000; iteration++) {
+			final var word = word(random);
+
+			for (final var pattern : PATTERNS) {
+				assertThat(Swar.matches(word, Swar.broadcast(pattern)))
+					.as("%016x for %02x", word, (int) pattern)
+					.isEqualTo(naiveMatches(word, pattern));
+			}
+		}
+	}
+
+	@Test
+	void matchesWithoutFalsePositivesNextToMatches() {
+		/* a borrow out of a matching byte must not mark the byte above it, such as 0x0B above 0x0A */
+		final var word = 0x0B0A0B0A_0A0B0A0BL;
+
+		assertThat(Swar.matches(word, Swar.NEWLINES)).isEqualTo(naiveMatches(word, '\n'));
+		assertThat(Swar.matches(0x8A8A0A8A_0AFF0A80L, Swar.NEWLINES)).isEqualTo(naiveMatches(0x8A8A0A8A_0AFF0A80L, '\n'));
+	}
+
+	@Test
+	void othersFirstIndexAndBefore() {
+		final var random = new Random(7);
+
+		for (var iteration = 0; iteration < 10_000; iteration++) {
+			final var mask = naiveMatches(word(random), ' ');
+
+			final var others = Swar.others(mask);
+			for (var index = 0; index < 8; index++) {
+				assertThat(isSet(others, index)).isEqualTo(!isSet(mask, index));
+			}
+
+			var first = 0;
+			while (first < 8 && !isSet(mask, first)) {
+				++first;
+			}
+
+			assertThat(Swar.firstIndex(mask)).isEqualTo(first);
+
+			for (var limit = 0; limit <= 8; limit++) {
+				final var before = Swar.before(mask, limit);
+
+				for (var index = 0; index < 8; index++) {
+					assertThat(isSet(before, index)).isEqualTo(index < limit && isSet(mask, index));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a word mostly made of the bytes around the patterns, where carries and borrows go wrong
+	 */
+	private static long word(Random random) {
+		var word = 0L;
+
+		for (var index = 0; index < 8; index++) {
+			final var value = switch (random.nextInt(4)) {
+				case 0 -> PATTERNS[random.nextInt(PATTERNS.length)];
+				case 1 -> PATTERNS[random.nextInt(PATTERNS.length)] + random.nextInt(3) - 1;
+				case 2 -> 0x80 | PATTERNS[random.nextInt(PATTERNS.length)];
+				default -> random.nextInt(256);
+			};
+
+			word |= (long) (value & 0xFF) << (index * 8);
+		}
+
+		return word;
+	}
+
+	private static long naiveMatches(long word, char pattern) {
+		var mask = 0L;
+
+		for (var index = 0; index < 8; index++) {
+			if (((word >>> (index * 8)) & 0xFF) == pattern) {
+				mask |= 0x80L << (index * 8);
+			}
+		}
+
+		return mask;
+	}
+
+	private static boolean isSet(long mask, int index) {
+		return (mask & (0x80L << (index * 8))) != 0;
+	}
+
+}